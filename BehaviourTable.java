@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The behaviour of a species, given as an NFA and compiled into a flat table
+ * that an engine can step every cell of the species through. A cell is in one
+ * state of the automaton at a time, and is alive while that state is
+ * accepting. Each generation the cell reads one symbol: its number of living
+ * neighbours, and the temperature and time of day.
+ *
+ * A transition's symbol is the number of neighbours, '0' to '8', optionally
+ * followed by a temperature, 'C', 'H' or 'W' for Cold, Hot or Warm, and then
+ * optionally by 'D' or 'N' for day or night; "3", "3W", "3N" and "3WN" are all
+ * symbols. The most specific symbol a state has a transition for is used: with
+ * 3 neighbours on a warm night, "3WN" is tried first, then "3W", "3N" and "3".
+ * A state with no transition for any of them stays as it is.
+ *
+ * Where a transition lists several next states, each entry is equally likely,
+ * so listing a state more than once weights it: nine entries of ALIVE and one
+ * of DEAD go to ALIVE 90% of the time. Epsilon-transitions are not allowed,
+ * as a cell reads exactly one symbol per generation.
+ *
+ * For every state, number of neighbours and environment, the table holds the
+ * next states with the cumulative probability of each, so stepping a cell is
+ * a lookup and a short scan with one random number.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class BehaviourTable {
+    private static final int MAX_STATES = 256; // The most states a byte per cell can number.
+    private static final int NEIGHBOUR_COUNTS = 9; // 0 to 8 living neighbours.
+    private static final String TEMPERATURES = "CHW"; // Cold, Hot and Warm.
+    private static final int ENVIRONMENTS = TEMPERATURES.length() * 2; // Each temperature by day and by night.
+
+    private final NFAState[] states; // Every state reachable from the start, numbered.
+    private final boolean[] alive; // Whether a cell in each state is alive.
+    private final int[] rowStart; // Where each row's outcomes start, rows + 1 entries.
+    private final double[] thresholds; // The cumulative probability of each outcome.
+    private final byte[] targets; // The state of each outcome.
+
+    /**
+     * Compile the behaviour given by an automaton. Its start state is state 0,
+     * and the other states are numbered in the order they are reached from it.
+     *
+     * @param nfa The automaton, with all its transitions added.
+     * @throws IllegalArgumentException if the automaton has an epsilon-transition,
+     *                                  a symbol that is not of the form above, or
+     *                                  more than 256 states.
+     */
+    public BehaviourTable(NFA nfa) {
+        Map<NFAState, Integer> numbers = new IdentityHashMap<>();
+        List<NFAState> found = new ArrayList<>();
+        found.add(nfa.getStartState());
+        numbers.put(nfa.getStartState(), 0);
+        for (int i = 0; i < found.size(); i++) {
+            NFAState state = found.get(i);
+            for (String symbol : state.getSymbols()) {
+                if (symbol.equals(NFAState.EPSILON)) {
+                    throw new IllegalArgumentException(state + " has an epsilon-transition");
+                }
+                parse(symbol);
+                for (NFAState next : state.getNextStates(symbol)) {
+                    if (!numbers.containsKey(next)) {
+                        numbers.put(next, found.size());
+                        found.add(next);
+                    }
+                }
+            }
+        }
+        if (found.size() > MAX_STATES) {
+            throw new IllegalArgumentException("A behaviour can have at most " + MAX_STATES + " states");
+        }
+        states = found.toArray(new NFAState[0]);
+        alive = new boolean[states.length];
+
+        int rows = states.length * ENVIRONMENTS * NEIGHBOUR_COUNTS;
+        rowStart = new int[rows + 1];
+        List<Double> thresholdList = new ArrayList<>();
+        List<Integer> targetList = new ArrayList<>();
+        for (int s = 0; s < states.length; s++) {
+            alive[s] = states[s].isAccepting();
+            for (int environment = 0; environment < ENVIRONMENTS; environment++) {
+                for (int neighbours = 0; neighbours < NEIGHBOUR_COUNTS; neighbours++) {
+                    rowStart[row(s, neighbours, environment)] = targetList.size();
+                    List<NFAState> next = lookup(states[s], neighbours, environment);
+                    if (next.isEmpty()) {
+                        thresholdList.add(1.0);
+                        targetList.add(s);
+                        continue;
+                    }
+                    // Merge repeated entries into one outcome of their total weight.
+                    Map<NFAState, Integer> weights = new IdentityHashMap<>();
+                    List<NFAState> order = new ArrayList<>();
+                    for (NFAState state : next) {
+                        if (weights.merge(state, 1, Integer::sum) == 1) {
+                            order.add(state);
+                        }
+                    }
+                    int total = 0;
+                    for (NFAState state : order) {
+                        total += weights.get(state);
+                        thresholdList.add(total == next.size() ? 1.0 : (double) total / next.size());
+                        targetList.add(numbers.get(state));
+                    }
+                }
+            }
+        }
+        rowStart[rows] = targetList.size();
+        thresholds = new double[targetList.size()];
+        targets = new byte[targetList.size()];
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholds[i] = thresholdList.get(i);
+            targets[i] = (byte) (int) targetList.get(i);
+        }
+    }
+
+    /**
+     * Check that a symbol is a number of neighbours optionally followed by a
+     * temperature and then a time of day.
+     */
+    private static void parse(String symbol) {
+        int i = 0;
+        boolean valid = symbol.length() > 0 && symbol.charAt(0) >= '0' && symbol.charAt(0) <= '8';
+        i++;
+        if (valid && i < symbol.length() && TEMPERATURES.indexOf(symbol.charAt(i)) >= 0) {
+            i++;
+        }
+        if (valid && i < symbol.length() && (symbol.charAt(i) == 'D' || symbol.charAt(i) == 'N')) {
+            i++;
+        }
+        if (!valid || i != symbol.length()) {
+            throw new IllegalArgumentException("Not a behaviour symbol: " + symbol);
+        }
+    }
+
+    /**
+     * Return the next states of the most specific transition a state has for
+     * the given input.
+     */
+    private static List<NFAState> lookup(NFAState state, int neighbours, int environment) {
+        String count = String.valueOf(neighbours);
+        String temperature = String.valueOf(TEMPERATURES.charAt(environment >> 1));
+        String time = (environment & 1) == 0 ? "D" : "N";
+        for (String symbol : new String[] { count + temperature + time, count + temperature, count + time, count }) {
+            List<NFAState> next = state.getNextStates(symbol);
+            if (!next.isEmpty()) {
+                return next;
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * @return The row of the table for a state and input.
+     */
+    private static int row(int state, int neighbours, int environment) {
+        return (state * ENVIRONMENTS + environment) * NEIGHBOUR_COUNTS + neighbours;
+    }
+
+    /**
+     * Return the number of an environment, for next().
+     *
+     * @param temperature The temperature, as Temperature.getDescription() gives it.
+     * @param day         Whether it is day.
+     * @return The environment.
+     */
+    public static int environment(String temperature, boolean day) {
+        int index = TEMPERATURES.indexOf(temperature.charAt(0));
+        return Math.max(index, 0) * 2 + (day ? 0 : 1);
+    }
+
+    /**
+     * Step a cell by one generation.
+     *
+     * @param state       The state the cell is in.
+     * @param neighbours  The number of living neighbours.
+     * @param environment The environment, from environment().
+     * @param chance      A random number in [0, 1) drawn for the cell.
+     * @return The state the cell is in afterwards.
+     */
+    public int next(int state, int neighbours, int environment, double chance) {
+        int row = row(state, neighbours, environment);
+        int outcome = rowStart[row];
+        int last = rowStart[row + 1] - 1;
+        while (outcome < last && chance >= thresholds[outcome]) {
+            outcome++;
+        }
+        return targets[outcome] & 0xFF;
+    }
+
+    /**
+     * Return the state a cell placed on the grid starts in: the start state if
+     * it agrees with whether the cell is alive, otherwise the first state that
+     * does.
+     *
+     * @param alive Whether the cell starts alive.
+     * @return The state.
+     */
+    public int initialState(boolean alive) {
+        for (int state = 0; state < states.length; state++) {
+            if (this.alive[state] == alive) {
+                return state;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param state A state.
+     * @return true if a cell in the state is alive.
+     */
+    public boolean isAlive(int state) {
+        return alive[state];
+    }
+
+    /**
+     * @return The number of states.
+     */
+    public int getStateCount() {
+        return states.length;
+    }
+
+    /**
+     * @param state A state.
+     * @return The NFA state it was compiled from.
+     */
+    public NFAState getState(int state) {
+        return states[state];
+    }
+}
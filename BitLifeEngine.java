@@ -0,0 +1,439 @@
+import java.util.Arrays;
+
+/**
+ * An engine for fields that only hold Mycoplasma. Each row is packed 64 cells
+ * to a long, and the next generation is computed a whole word at a time by
+ * adding up the eight neighbour bits with bitwise full adders.
+ *
+ * Disease and age are kept in their own bitplanes. Ages are stored bit-sliced,
+ * one plane per bit, and saturate once they are well past the maximum age.
+ * Infection by chance, Cell.infectedAct(), CellRecovery and checkAge() are
+ * applied a word at a time, with bitwise comparisons and additions on the age
+ * planes. Only two things are done one cell at a time, and only for the few
+ * living diseased cells: drawing whether the disease spreads to each
+ * neighbour, and scaling the age of a cell that recovers.
+ *
+ * All cells read the generation as it was at the start of the step, so cells
+ * made dead or diseased during a step only affect their neighbours from the
+ * next generation onwards.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class BitLifeEngine implements LifeEngine {
+    private static final int MAX_AGE = Mycoplasma.MAX_AGE;
+    private static final int AGE_BITS = 32 - Integer.numberOfLeadingZeros(MAX_AGE + 1);
+    private static final double RECOVERY_AGE_FACTOR = 0.8; // As in CellRecovery.
+
+    private final int depth, width;
+    private final int words; // Number of longs per row.
+    private final long[] occupied; // Locations holding a Mycoplasma.
+    private long[] alive;
+    private long[] next;
+    private final long[] diseased;
+    private final long[] infected; // Cells that caught the disease by chance in this step.
+    private final long[] recovered; // Diseased cells that recover in this step.
+    private final long[] caught; // Cells that caught the disease from a neighbour in this step.
+    private final long[][] age; // age[b] holds bit b of every cell's age.
+    private int oldest; // No cell is older than this.
+    private int steps; // Generations stepped since the engine was cleared.
+    private int living; // Number of living cells.
+    private int diseasedAlive; // Number of cells both alive and diseased.
+
+    /**
+     * Create an empty engine of the given dimensions.
+     *
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public BitLifeEngine(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        words = (width + 63) >>> 6;
+        int size = depth * words;
+        occupied = new long[size];
+        alive = new long[size];
+        next = new long[size];
+        diseased = new long[size];
+        infected = new long[size];
+        recovered = new long[size];
+        caught = new long[size];
+        age = new long[AGE_BITS][size];
+    }
+
+    public void clear() {
+        Arrays.fill(occupied, 0);
+        Arrays.fill(alive, 0);
+        Arrays.fill(diseased, 0);
+        Arrays.fill(infected, 0);
+        Arrays.fill(recovered, 0);
+        Arrays.fill(caught, 0);
+        for (long[] plane : age) {
+            Arrays.fill(plane, 0);
+        }
+        oldest = 0;
+        steps = 0;
+        living = 0;
+        diseasedAlive = 0;
+    }
+
+    /**
+     * Place a new Mycoplasma at the given location.
+     *
+     * @throws IllegalArgumentException if the species is not Mycoplasma.
+     */
+    public void place(int row, int col, int species, boolean alive) {
+        if (species != Species.MYCOPLASMA) {
+            throw new IllegalArgumentException("BitLifeEngine only holds Mycoplasma");
+        }
+        int word = row * words + (col >>> 6);
+        long bit = 1L << col;
+        occupied[word] |= bit;
+        if ((this.alive[word] & diseased[word] & bit) != 0) {
+            diseasedAlive--;
+        }
+        living += (alive ? 1 : 0) - ((this.alive[word] & bit) != 0 ? 1 : 0);
+        this.alive[word] = alive ? this.alive[word] | bit : this.alive[word] & ~bit;
+        diseased[word] &= ~bit;
+        setAge(word, bit, 0);
+    }
+
+    /**
+     * Place a Mycoplasma as it was when a checkpoint was taken. Empty locations
+     * are left empty.
+     *
+     * @throws IllegalArgumentException if the species is not Mycoplasma.
+     */
+    public void restore(int row, int col, int species, boolean alive, int age, boolean diseased,
+            boolean automatonAlive) {
+        if (species == Species.NONE && !alive) {
+            return;
+        }
+        place(row, col, species, alive);
+        int word = row * words + (col >>> 6);
+        long bit = 1L << col;
+        setAge(word, bit, age);
+        oldest = Math.max(oldest, Math.min(age, (1 << AGE_BITS) - 1));
+        if (diseased) {
+            this.diseased[word] |= bit;
+            diseasedAlive += alive ? 1 : 0;
+        }
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public void setSteps(int steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Advance every cell by one generation.
+     *
+     * @param environment The field holding the temperature.
+     */
+    public void step(Field environment) {
+        // Whether any cell can be past its maximum age, or too old for
+        // infectedAct() to keep it alive.
+        boolean ageing = oldest > MAX_AGE - 101;
+        boolean warm = environment.getTemperatureCondition().equals("Warm");
+        infectCells();
+        for (int row = 0; row < depth; row++) {
+            stepRow(row, ageing, warm);
+        }
+        for (int i = 0; i < diseased.length; i++) {
+            for (long bits = diseased[i] | infected[i]; bits != 0; bits &= bits - 1) {
+                int row = i / words;
+                int col = ((i % words) << 6) + Long.numberOfTrailingZeros(bits);
+                actDiseased(row, col, i, Long.lowestOneBit(bits));
+            }
+        }
+        for (int i = 0; i < diseased.length; i++) {
+            // A cell that recovers can catch the disease again, and a dead cell is not diseased.
+            diseased[i] = ((diseased[i] | infected[i]) & ~recovered[i] | caught[i]) & next[i];
+            infected[i] = 0;
+            recovered[i] = 0;
+            caught[i] = 0;
+        }
+
+        long[] swap = alive;
+        alive = next;
+        next = swap;
+        increaseAge();
+        steps++;
+    }
+
+    /**
+     * Compute the next state of every cell in a row: the B3/S23 rule for a
+     * healthy cell, and Cell.infectedAct() and CellRecovery for a diseased one.
+     * A cell that checkAge() or infectedAct() kills still counts as alive for
+     * its neighbours in this generation, as it does on Cell objects.
+     *
+     * @param ageing Whether any cell may be too old, see step().
+     * @param warm   Whether diseased cells recover.
+     */
+    private void stepRow(int row, boolean ageing, boolean warm) {
+        int base = row * words;
+        int above = row > 0 ? base - words : -1;
+        int below = row < depth - 1 ? base + words : -1;
+        for (int w = 0; w < words; w++) {
+            // Horizontal sums of the row above (a1,a0), this row (b1,b0) and below (c1,c0).
+            long l, c, r;
+            long a0 = 0, a1 = 0, c0 = 0, c1 = 0;
+            if (above >= 0) {
+                c = alive[above + w];
+                l = west(above, w, c);
+                r = east(above, w, c);
+                a0 = l ^ c ^ r;
+                a1 = (l & c) | (r & (l ^ c));
+            }
+            c = alive[base + w];
+            l = west(base, w, c);
+            r = east(base, w, c);
+            long b0 = l ^ r;
+            long b1 = l & r;
+            if (below >= 0) {
+                long m = alive[below + w];
+                l = west(below, w, m);
+                r = east(below, w, m);
+                c0 = l ^ m ^ r;
+                c1 = (l & m) | (r & (l ^ m));
+            }
+            // Add the three 2-bit sums into a 4-bit count (t3 t2 t1 t0).
+            long t0 = a0 ^ b0 ^ c0;
+            long carry = (a0 & b0) | (c0 & (a0 ^ b0));
+            long s = a1 ^ b1 ^ c1;
+            long k = (a1 & b1) | (c1 & (a1 ^ b1));
+            long t1 = s ^ carry;
+            long k2 = s & carry;
+            long t2 = k ^ k2;
+            long t3 = k & k2;
+            int i = base + w;
+            long three = ~t3 & ~t2 & t1 & t0;
+            long sick = diseased[i] | infected[i];
+            // Alive next if the count is 3, or 2 and already alive.
+            long nextWord = ~t3 & ~t2 & t1 & (t0 | c) & occupied[i] & ~sick;
+            if (sick != 0) {
+                // infectedAct(): a cell young enough to have 100 added to its
+                // age lives on with three neighbours; any other dies.
+                long young = sick & (ageing ? ~olderThan(i, MAX_AGE - 101) : -1L);
+                addToAge(i, young, 100);
+                nextWord |= young & three;
+                if (warm) {
+                    recovered[i] = young; // CellRecovery, for every diseased cell still alive.
+                    nextWord |= young;
+                }
+            }
+            if (ageing) {
+                nextWord &= ~(c & olderThan(i, MAX_AGE)); // checkAge(), which a dead cell does not do.
+            }
+            next[i] = nextWord;
+        }
+    }
+
+    /**
+     * Return each cell's west neighbour bit in the position of the cell.
+     */
+    private long west(int rowBase, int w, long word) {
+        long shifted = word << 1;
+        if (w > 0) {
+            shifted |= alive[rowBase + w - 1] >>> 63;
+        }
+        return shifted;
+    }
+
+    /**
+     * Return each cell's east neighbour bit in the position of the cell.
+     */
+    private long east(int rowBase, int w, long word) {
+        long shifted = word >>> 1;
+        if (w < words - 1) {
+            shifted |= alive[rowBase + w + 1] << 63;
+        }
+        return shifted;
+    }
+
+    /**
+     * Disease.infectCell() for every living cell that is not diseased yet, into
+     * the infected plane. Each word covers the 64 columns of one
+     * Disease.infectionMask(), which is only drawn for words holding such
+     * cells. The diseased plane keeps the state at the start of the step, for
+     * Disease.wasDiseased().
+     */
+    private void infectCells() {
+        for (int i = 0; i < occupied.length; i++) {
+            long healthy = alive[i] & ~diseased[i];
+            if (healthy != 0) {
+                infected[i] = healthy & Disease.infectionMask(steps, i / words, i % words);
+            }
+        }
+    }
+
+    /**
+     * The part of a diseased cell's step that is not done a word at a time:
+     * Disease.spreadDisease(), into the caught plane for neighbours that were
+     * not diseased at the start of the step, and the age CellRecovery gives a
+     * cell that recovers.
+     */
+    private void actDiseased(int row, int col, int word, long bit) {
+        for (int r = Math.max(0, row - 1); r <= Math.min(depth - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++) {
+                int w = r * words + (c >>> 6);
+                long b = 1L << c;
+                if ((r != row || c != col) && (alive[w] & ~diseased[w] & b) != 0
+                        && Randomizer.uniform(steps, Coordinates.pack(row, col),
+                                Randomizer.SPREAD + (r - row + 1) * 3 + (c - col + 1)) <= Disease.CELL_DISEASE_PROB) {
+                    caught[w] |= b;
+                }
+            }
+        }
+        int currentAge = getAge(word, bit);
+        if ((recovered[word] & bit) != 0) {
+            currentAge = (int) (currentAge * RECOVERY_AGE_FACTOR);
+            setAge(word, bit, currentAge);
+        }
+        oldest = Math.max(oldest, currentAge);
+    }
+
+    private int countLivingNeighbours(int row, int col) {
+        int count = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(depth - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++) {
+                if ((r != row || c != col) && (alive[r * words + (c >>> 6)] & (1L << c)) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add one to every cell's age, holding ages that would overflow at the
+     * largest value the planes can store. The numbers of living and diseased
+     * living cells are counted in the same pass.
+     */
+    private void increaseAge() {
+        living = 0;
+        diseasedAlive = 0;
+        for (int i = 0; i < occupied.length; i++) {
+            living += Long.bitCount(alive[i]);
+            diseasedAlive += Long.bitCount(alive[i] & diseased[i]);
+            long carry = -1L;
+            for (int b = 0; b < AGE_BITS && carry != 0; b++) {
+                long plane = age[b][i];
+                age[b][i] = plane ^ carry;
+                carry &= plane;
+            }
+            if (carry != 0) {
+                for (int b = 0; b < AGE_BITS; b++) {
+                    age[b][i] |= carry;
+                }
+            }
+        }
+        oldest = Math.min(oldest + 1, (1 << AGE_BITS) - 1);
+    }
+
+    /**
+     * Add a constant to the bit-sliced ages of the cells of one word in a mask.
+     * The sums must fit in the planes.
+     */
+    private void addToAge(int i, long mask, int value) {
+        long carry = 0;
+        for (int b = 0; b < AGE_BITS; b++) {
+            long plane = age[b][i];
+            long add = (value & (1 << b)) != 0 ? mask : 0;
+            age[b][i] = plane ^ add ^ carry;
+            carry = (plane & add) | (carry & (plane ^ add));
+        }
+    }
+
+    /**
+     * Compare the bit-sliced ages of one word against a constant.
+     *
+     * @return A mask of the cells whose age is greater than the limit.
+     */
+    private long olderThan(int i, int limit) {
+        long greater = 0;
+        long equal = -1L;
+        for (int b = AGE_BITS - 1; b >= 0; b--) {
+            long plane = age[b][i];
+            if ((limit & (1 << b)) == 0) {
+                greater |= equal & plane;
+                equal &= ~plane;
+            } else {
+                equal &= plane;
+            }
+        }
+        return greater;
+    }
+
+    private int getAge(int word, long bit) {
+        int value = 0;
+        for (int b = 0; b < AGE_BITS; b++) {
+            if ((age[b][word] & bit) != 0) {
+                value |= 1 << b;
+            }
+        }
+        return value;
+    }
+
+    private void setAge(int word, long bit, int value) {
+        value = Math.min(value, (1 << AGE_BITS) - 1);
+        for (int b = 0; b < AGE_BITS; b++) {
+            if ((value & (1 << b)) != 0) {
+                age[b][word] |= bit;
+            } else {
+                age[b][word] &= ~bit;
+            }
+        }
+    }
+
+    public boolean isAlive(int row, int col) {
+        return (alive[row * words + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    public int getSpecies(int row, int col) {
+        boolean present = (occupied[row * words + (col >>> 6)] & (1L << col)) != 0;
+        return present ? Species.MYCOPLASMA : Species.NONE;
+    }
+
+    public boolean isDiseased(int row, int col) {
+        return (diseased[row * words + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    public boolean isAutomatonAlive(int row, int col) {
+        return isAlive(row, col); // There are no NonDeterministicCells here; an automaton agrees with its cell.
+    }
+
+    /**
+     * Return the age of the cell at the given location.
+     *
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The age in generations.
+     */
+    public int getAge(int row, int col) {
+        return getAge(row * words + (col >>> 6), 1L << col);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getLivingCount(int species) {
+        return species == Species.MYCOPLASMA ? living : 0;
+    }
+
+    public int getDiseasedAliveCount() {
+        return diseasedAlive;
+    }
+
+    public int getDiseasedAliveCount(int species) {
+        return species == Species.MYCOPLASMA ? diseasedAlive : 0;
+    }
+}
@@ -1,4 +1,3 @@
-import javafx.scene.paint.Color;
 import java.util.List;
 
 /**
@@ -11,11 +10,12 @@ import java.util.List;
  */
 
 public abstract class Cell {
-    private boolean alive;
-    private boolean nextAlive; // The state of the cell in the next iteration
-    private Field field;
-    private Location location;
-    private Color color = Color.WHITE;
+    private Field field; // Also holds whether the cell is alive now and in the next generation.
+    private int deadAt = -1; // Swap count of the field when setDead() was last called.
+    private int countedAt = -1; // Swap count of the field when the cell was last counted.
+    private boolean counted; // Whether the cell is counted as alive and diseased next generation.
+    private long coordinates; // Packed row and column, see Coordinates.
+    private int color = Colors.WHITE; // ARGB, see Colors.
 
     private double age; // Current age of the cell.
     private double maxAge; // Every cell have a max age, they will die when reaching.
@@ -32,17 +32,17 @@ public abstract class Cell {
      *
      * @param field      The field currently occupied.
      * @param location   The location within the field.
-     * @param col        The color of the cell.
+     * @param col        The color of the cell, as ARGB, see Colors.
      * @param diseasable Whether the cell is susceptible to diseases.
      */
-    public Cell(Field field, Location location, Color col, boolean diseasable) {
-        alive = true;
-        nextAlive = false;
+    public Cell(Field field, Location location, int col, boolean diseasable) {
         this.field = field;
         this.diseasable = false;
-        this.disease = new Disease(); // Initialize the Disease instance
+        this.disease = new Disease(field); // Initialize the Disease instance
         this.cellRecovery = new CellRecovery();
         setLocation(location);
+        setAlive(true);
+        setNextState(false);
         setColor(col);
         age = 0;
     }
@@ -55,40 +55,73 @@ public abstract class Cell {
      */
     abstract public void act(List<Cell> newCell);
 
+    /**
+     * Decide whether this cell, which is dead, comes alive in the next
+     * generation. A dead cell cannot catch or spread a disease, and stays dead
+     * unless its species has a birth rule.
+     */
+    public void actDead() {
+        setNextState(false);
+    }
+
+    /**
+     * Return whether a dead cell of this kind can come alive again, so that it
+     * has to stay in the simulation.
+     * 
+     * @return true if the species has a birth rule.
+     */
+    protected boolean canBeBorn() {
+        return false;
+    }
+
+    /**
+     * Forget what the cell carried while it was alive, once it has died. This
+     * is called between generations, and a dead cell is not diseased.
+     */
+    protected void die() {
+        restoreDiseased(false);
+        setNextState(false);
+    }
+
     /**
      * Check whether the cell is alive or not.
      * 
      * @return true if the cell is still alive.
      */
     protected boolean isAlive() {
-        return alive;
+        return deadAt != field.getSwapCount() && field.isAliveAt(getRow(), getCol());
     }
 
     /**
-     * Indicate that the cell is no longer alive.
+     * Set whether the cell is alive now, when setting up the field.
+     * 
+     * @param alive Whether the cell is alive.
      */
-    protected void setDead() {
-        alive = false;
+    protected void setAlive(boolean alive) {
+        deadAt = -1;
+        field.setAlive(getRow(), getCol(), alive);
     }
 
     /**
-     * Indicate that the cell will be alive or dead in the next generation.
+     * Indicate that the cell is no longer alive. The cell counts as dead for the
+     * rest of its own act(), but its neighbours still see it as it was at the
+     * start of the generation.
      */
-    protected void setNextState(boolean value) {
-        nextAlive = value;
+    protected void setDead() {
+        deadAt = field.getSwapCount();
     }
 
     /**
-     * Changes the state of the cell
+     * Indicate that the cell will be alive or dead in the next generation.
      */
-    protected void updateState() {
-        alive = nextAlive;
+    protected void setNextState(boolean value) {
+        field.setNextAlive(getRow(), getCol(), value);
     }
 
     /**
      * Changes the color of the cell
      */
-    protected void setColor(Color col) {
+    protected void setColor(int col) {
         color = col;
     }
 
@@ -97,7 +130,7 @@ public abstract class Cell {
      * 
      * @return color
      */
-    protected Color getColor() {
+    protected int getColor() {
         return color;
     }
 
@@ -107,7 +140,30 @@ public abstract class Cell {
      * @return The cell's location.
      */
     protected Location getLocation() {
-        return location;
+        return new Location(getRow(), getCol());
+    }
+
+    /**
+     * Return the cell's packed row and column, see Coordinates.
+     * 
+     * @return The cell's coordinates.
+     */
+    protected long getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * @return The row of the cell's location.
+     */
+    protected int getRow() {
+        return Coordinates.row(coordinates);
+    }
+
+    /**
+     * @return The column of the cell's location.
+     */
+    protected int getCol() {
+        return Coordinates.col(coordinates);
     }
 
     /**
@@ -116,8 +172,8 @@ public abstract class Cell {
      * @param location The cell's location.
      */
     protected void setLocation(Location location) {
-        this.location = location;
-        field.place(this, location);
+        coordinates = location.pack();
+        field.place(this, location.getRow(), location.getCol());
     }
 
     /**
@@ -246,11 +302,11 @@ public abstract class Cell {
      * 
      */
     public void infectedAct() {
-        List<Cell> neighbours = getField().getLivingNeighbours(getLocation());
+        int neighbours = getField().countLivingNeighbours(getRow(), getCol());
         setNextState(false);
         if (age + 100 < maxAge) {
             setAge(age + 100); // The cell age is reduced 100
-            if (neighbours.size() == 3) {
+            if (neighbours == 3) {
                 setNextState(true);
             }
         } else {
@@ -275,4 +331,48 @@ public abstract class Cell {
     protected boolean getDiseased() {
         return disease.isDiseased();
     }
+
+    /**
+     * Set whether the cell is diseased, between generations, as when resuming
+     * from a checkpoint.
+     * 
+     * @param diseased Whether the cell is diseased.
+     */
+    protected void restoreDiseased(boolean diseased) {
+        disease.restore(diseased);
+    }
+
+    /**
+     * Get whether the cell was diseased at the start of the generation, as its
+     * neighbours see it.
+     * 
+     * @return true if the cell was diseased.
+     */
+    protected boolean wasDiseased() {
+        return disease.wasDiseased();
+    }
+
+    /**
+     * Catch the disease from a neighbour. The cell is diseased from the next
+     * generation on.
+     */
+    protected void catchDisease() {
+        disease.catchDisease();
+        updateDiseaseCount();
+    }
+
+    /**
+     * Count the cell in or out of the field's alive and diseased cells for the
+     * next generation, after its next state or disease may have changed.
+     */
+    protected void updateDiseaseCount() {
+        int now = field.getSwapCount();
+        boolean before = countedAt == now && counted;
+        boolean after = field.isNextAliveAt(getRow(), getCol()) && disease.willBeDiseased();
+        countedAt = now;
+        counted = after;
+        if (before != after) {
+            field.countNextDiseasedAlive(Species.of(this), after ? 1 : -1);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An automaton run at every location of the grid, fed one symbol per
+ * generation about the cell there, such as whether it is alive. Each location
+ * keeps the state its automaton is in, so a generation moves every automaton
+ * on by one symbol instead of checking its whole history again with
+ * NFA.accepts(). Locations whose automaton is in an accepting state are kept
+ * as a bitset that can be queried.
+ *
+ * The NFA is compiled to a minimised DFA, and each location holds the number
+ * of its DFA state in a char, so the DFA may have at most 65536 states. Every
+ * location starts in the start state when the automata are attached and when
+ * they are reset. A symbol that no transition reads leads to the dead state,
+ * which accepts nothing and is never left.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class CellAutomata {
+    private static final int MAX_STATES = 1 << 16; // The most states a char can number.
+
+    /**
+     * What each automaton is told about its cell every generation.
+     */
+    public enum Input {
+        /** '1' if the cell is alive, otherwise '0'. */
+        ALIVE("01"),
+        /** The number of living neighbours, '0' to '8'. */
+        NEIGHBOURS("012345678");
+
+        private final String symbols; // The symbol for each value.
+
+        Input(String symbols) {
+            this.symbols = symbols;
+        }
+
+        /**
+         * @return The symbols this input gives, the symbol for value v at v.
+         */
+        public String getSymbols() {
+            return symbols;
+        }
+    }
+
+    private final LazyDFA dfa;
+    private final Input input;
+    private final int depth, width;
+    private final char[] states; // The DFA state at each location.
+    private final long[] accepted; // Bit index set if the automaton at index accepts.
+    private final int[] symbolIds; // The DFA's id for each value of the input, -1 if it has none.
+    private final byte[] alive; // Whether each location is alive, read once a generation.
+    private final byte[] values; // The value of the input at each location.
+
+    /**
+     * Compile an automaton to run at every location of a grid.
+     *
+     * @param nfa   The automaton, with all its transitions added.
+     * @param input What each automaton reads about its cell.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     * @throws IllegalStateException if the DFA needs more than 65536 states.
+     */
+    public CellAutomata(NFA nfa, Input input, int depth, int width) {
+        dfa = new LazyDFA(new CompiledNFA(nfa), MAX_STATES);
+        dfa.minimise();
+        this.input = input;
+        this.depth = depth;
+        this.width = width;
+        states = new char[depth * width];
+        accepted = new long[(depth * width + 63) >>> 6];
+        symbolIds = new int[input.getSymbols().length()];
+        for (int value = 0; value < symbolIds.length; value++) {
+            symbolIds[value] = dfa.symbolOf(input.getSymbols().charAt(value));
+        }
+        alive = new byte[depth * width];
+        values = new byte[depth * width];
+        reset();
+    }
+
+    /**
+     * Put every location back in the start state, with no history.
+     */
+    public void reset() {
+        Arrays.fill(states, (char) dfa.getStartState());
+        Arrays.fill(accepted, dfa.isAccepting(dfa.getStartState()) ? -1L : 0L);
+        int extra = accepted.length * 64 - states.length;
+        if (extra > 0) {
+            accepted[accepted.length - 1] &= -1L >>> extra;
+        }
+    }
+
+    /**
+     * Feed every automaton the symbol for its cell in the generation just run.
+     *
+     * @param simulator The simulation, with a grid of the size of these automata.
+     */
+    public void advance(Simulator simulator) {
+        readAlive(simulator);
+        if (input == Input.ALIVE) {
+            System.arraycopy(alive, 0, values, 0, alive.length);
+        } else {
+            countNeighbours();
+        }
+        Arrays.fill(accepted, 0L);
+        for (int index = 0; index < states.length; index++) {
+            int state = dfa.step(states[index], symbolIds[values[index]]);
+            states[index] = (char) state;
+            if (dfa.isAccepting(state)) {
+                accepted[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+
+    /**
+     * Note which locations are alive, from the engine or the field.
+     */
+    private void readAlive(Simulator simulator) {
+        LifeEngine engine = simulator.getEngine();
+        Field field = simulator.getField();
+        for (int row = 0, index = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++, index++) {
+                boolean isAlive = engine != null ? engine.isAlive(row, col) : field.isAliveAt(row, col);
+                alive[index] = (byte) (isAlive ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Count the living neighbours of every location, treating locations
+     * outside the grid as dead, as Field does.
+     */
+    private void countNeighbours() {
+        for (int row = 0; row < depth; row++) {
+            int top = Math.max(0, row - 1), bottom = Math.min(depth - 1, row + 1);
+            for (int col = 0; col < width; col++) {
+                int left = Math.max(0, col - 1), right = Math.min(width - 1, col + 1);
+                int count = -alive[row * width + col];
+                for (int r = top; r <= bottom; r++) {
+                    for (int c = left, index = r * width + left; c <= right; c++, index++) {
+                        count += alive[index];
+                    }
+                }
+                values[row * width + col] = (byte) count;
+            }
+        }
+    }
+
+    /**
+     * @param row The row of a location.
+     * @param col The column of a location.
+     * @return true if the automaton at the location is in an accepting state.
+     */
+    public boolean isAccepted(int row, int col) {
+        int index = row * width + col;
+        return (accepted[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param row The row of a location.
+     * @param col The column of a location.
+     * @return The DFA state of the automaton at the location.
+     */
+    public int getState(int row, int col) {
+        return states[row * width + col];
+    }
+
+    /**
+     * @return The locations whose automaton accepts: bit row * width + col is
+     *         set if the one at (row, col) does. The bitset is a copy.
+     */
+    public BitSet getAccepted() {
+        return BitSet.valueOf(accepted);
+    }
+
+    /**
+     * @return The number of locations whose automaton accepts.
+     */
+    public int getAcceptedCount() {
+        int count = 0;
+        for (long word : accepted) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return The DFA every location runs.
+     */
+    public LazyDFA getDFA() {
+        return dfa;
+    }
+
+    /**
+     * @return What each automaton reads about its cell.
+     */
+    public Input getInput() {
+        return input;
+    }
+}
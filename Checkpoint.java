@@ -0,0 +1,431 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Save a running simulation to a binary file and load it back, so that a long
+ * run can be stopped and carried on later. A loaded simulation goes on exactly
+ * as the saved one would have: the grid, the ages, the disease and automaton
+ * states, the weather and the state of the shared random generator are all
+ * kept.
+ *
+ * The file is written and read through memory-mapped windows, so the grid is
+ * never copied through an intermediate buffer, and files larger than a single
+ * mapping allows are still possible. The file starts with a header, followed by
+ * blocks of locations. Each block gives its top row, left column, depth and
+ * width, then for its locations in row order:
+ * - whether each is alive, one bit each, packed into longs,
+ * - the species id, one byte each,
+ * - flags, one byte each: bit 0 diseased, bit 1 automaton ALIVE,
+ * - the age, an int each, or a double each for Cell objects,
+ * - for Cell objects only, the colour as an ARGB int each.
+ * A bounded grid is saved as one block and a ChunkedField as one block per
+ * allocated chunk. A HashLifeEngine cannot be saved, as it would have to be
+ * expanded to one entry per location.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class Checkpoint {
+    private static final long MAGIC = 0x4C49464543484B50L; // "LIFECHKP"
+    private static final int VERSION = 1;
+    private static final long WINDOW = 1L << 28; // Most bytes mapped at once.
+
+    // Kinds of grid, as saved in the header.
+    private static final int CELLS = 0;
+    private static final int COMPACT = 1;
+    private static final int BIT = 2;
+    private static final int CHUNKED = 3;
+    private static final int NONDETERMINISTIC = 4;
+
+    private static final int DISEASED = 1; // Flag bits.
+    private static final int AUTOMATON_ALIVE = 2;
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final long size; // Length of the file.
+    private MappedByteBuffer window; // The part of the file mapped now.
+    private long windowStart; // Offset of the window in the file.
+
+    private Checkpoint(FileChannel channel, FileChannel.MapMode mode, long size) {
+        this.channel = channel;
+        this.mode = mode;
+        this.size = size;
+    }
+
+    /**
+     * Save the state of a simulation between generations.
+     *
+     * @param simulator The simulation.
+     * @param path      The file to write, replaced if it exists.
+     * @throws IOException              if the file cannot be written.
+     * @throws IllegalArgumentException if the simulation uses a HashLifeEngine.
+     */
+    public static void save(Simulator simulator, Path path) throws IOException {
+        Field field = simulator.getField();
+        LifeEngine engine = simulator.getEngine();
+        int kind = kindOf(engine);
+        long[] corners = blockCorners(simulator, kind);
+        int blockDepth = kind == CHUNKED ? ChunkedField.getChunkSize() : field.getDepth();
+        int blockWidth = kind == CHUNKED ? ChunkedField.getChunkSize() : field.getWidth();
+        byte[] temperature = field.getTemperature().getDescription().getBytes(StandardCharsets.UTF_8);
+        byte[] cellType = simulator.getCellType() == null ? null
+                : simulator.getCellType().getBytes(StandardCharsets.UTF_8);
+
+        // Three longs and fourteen ints, besides the strings.
+        long headerSize = 3 * 8 + 14 * 4 + temperature.length + (cellType == null ? 0 : cellType.length);
+        long size = headerSize + corners.length * blockSize(kind, blockDepth, blockWidth);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Checkpoint out = new Checkpoint(channel, FileChannel.MapMode.READ_WRITE, size);
+            out.putLong(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(field.getDepth());
+            out.putInt(field.getWidth());
+            out.putInt(kind);
+            out.putInt(simulator.getGeneration());
+            out.putInt(field.getGeneration());
+            out.putInt(field.getSwapCount());
+            out.putInt(engine == null ? 0 : engine.getSteps());
+            out.putInt(simulator.getThreads());
+            out.putInt(kind == CHUNKED ? ((ChunkedField) engine).getBackground() : Species.NONE);
+            out.putInt(field.getTemperature().getStepsLeft());
+            out.putLong(Randomizer.getSeed());
+            out.putLong(Randomizer.getState());
+            out.putBytes(temperature);
+            out.putBytes(cellType);
+            out.putInt(corners.length);
+            for (long corner : corners) {
+                out.writeBlock(field, engine, Coordinates.row(corner), Coordinates.col(corner), blockDepth, blockWidth);
+            }
+            out.window.force(); // Earlier windows were forced as they were left.
+        }
+    }
+
+    /**
+     * Load a simulation saved by save(). The shared random generator is set to
+     * the state it was in when the simulation was saved.
+     *
+     * @param path The file to read.
+     * @return The simulation, ready to run its next generation.
+     * @throws IOException if the file cannot be read or is not a checkpoint.
+     */
+    public static Simulator load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Checkpoint in = new Checkpoint(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+            if (in.getLong() != MAGIC) {
+                throw new IOException(path + " is not a checkpoint");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            int depth = in.getInt();
+            int width = in.getInt();
+            int kind = in.getInt();
+            int generation = in.getInt();
+            int fieldGeneration = in.getInt();
+            int swaps = in.getInt();
+            int steps = in.getInt();
+            int threads = in.getInt();
+            int background = in.getInt();
+            int stepsLeft = in.getInt();
+            long seed = in.getLong();
+            long state = in.getLong();
+            String temperature = in.getString();
+            String cellType = in.getString();
+            if (temperature == null || depth < 1 || width < 1 || kind < CELLS || kind > NONDETERMINISTIC) {
+                throw new IOException(path + " is corrupt");
+            }
+
+            Simulator simulator = new Simulator(depth, width);
+            LifeEngine engine = createEngine(kind, depth, width);
+            simulator.setEngine(engine);
+            simulator.setThreads(threads);
+            if (kind == CHUNKED && background != Species.NONE) {
+                ((ChunkedField) engine).setBackground(background);
+            }
+            if (engine != null) {
+                engine.setSteps(steps);
+            }
+            int blocks = in.getInt();
+            for (int block = 0; block < blocks; block++) {
+                in.readBlock(simulator, engine);
+            }
+            simulator.getField().restore(fieldGeneration, swaps, new Temperature(temperature, stepsLeft));
+            simulator.restore(generation, cellType);
+            // Last, as setting up the simulation draws from the generator.
+            Randomizer.setSeed(seed);
+            Randomizer.setState(state);
+            return simulator;
+        }
+    }
+
+    /**
+     * @return The kind of grid the engine keeps, as saved in the header.
+     */
+    private static int kindOf(LifeEngine engine) {
+        if (engine == null) {
+            return CELLS;
+        } else if (engine instanceof CompactField) {
+            return COMPACT;
+        } else if (engine instanceof BitLifeEngine) {
+            return BIT;
+        } else if (engine instanceof ChunkedField) {
+            return CHUNKED;
+        } else if (engine instanceof NonDeterministicEngine) {
+            return NONDETERMINISTIC;
+        }
+        throw new IllegalArgumentException(engine.getClass().getName() + " cannot be saved");
+    }
+
+    private static LifeEngine createEngine(int kind, int depth, int width) {
+        switch (kind) {
+        case COMPACT:
+            return new CompactField(depth, width);
+        case BIT:
+            return new BitLifeEngine(depth, width);
+        case CHUNKED:
+            return new ChunkedField(depth, width);
+        case NONDETERMINISTIC:
+            return new NonDeterministicEngine(depth, width);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @return The packed top left location of every block to save.
+     */
+    private static long[] blockCorners(Simulator simulator, int kind) {
+        if (kind == CHUNKED) {
+            return ((ChunkedField) simulator.getEngine()).getChunkCorners();
+        }
+        return new long[] { Coordinates.pack(0, 0) };
+    }
+
+    /**
+     * @return The number of bytes a block of the given size takes.
+     */
+    private static long blockSize(int kind, int depth, int width) {
+        long locations = (long) depth * width;
+        long perLocation = 2 + (kind == CELLS ? 8 + 4 : 4);
+        return 4 * 4 + (locations + 63) / 64 * 8 + locations * perLocation;
+    }
+
+    /**
+     * Write the locations of one block.
+     */
+    private void writeBlock(Field field, LifeEngine engine, int top, int left, int depth, int width)
+            throws IOException {
+        putInt(top);
+        putInt(left);
+        putInt(depth);
+        putInt(width);
+        long bits = 0;
+        int index = 0;
+        for (int row = top; row < top + depth; row++) {
+            for (int col = left; col < left + width; col++) {
+                boolean alive = engine == null ? field.isAliveAt(row, col) : engine.isAlive(row, col);
+                bits |= (alive ? 1L : 0L) << index;
+                if (++index == 64) {
+                    putLong(bits);
+                    bits = 0;
+                    index = 0;
+                }
+            }
+        }
+        if (index != 0) {
+            putLong(bits);
+        }
+        for (int row = top; row < top + depth; row++) {
+            for (int col = left; col < left + width; col++) {
+                Cell cell = engine == null ? field.getObjectAt(row, col) : null;
+                putByte(engine != null ? engine.getSpecies(row, col) : cell == null ? Species.NONE : Species.of(cell));
+            }
+        }
+        for (int row = top; row < top + depth; row++) {
+            for (int col = left; col < left + width; col++) {
+                boolean diseased, automatonAlive;
+                if (engine != null) {
+                    diseased = engine.isDiseased(row, col);
+                    automatonAlive = engine.isAutomatonAlive(row, col);
+                } else {
+                    Cell cell = field.getObjectAt(row, col);
+                    diseased = cell != null && cell.getDiseased();
+                    automatonAlive = !(cell instanceof NonDeterministicCells)
+                            || ((NonDeterministicCells) cell).isAutomatonAlive();
+                }
+                putByte((diseased ? DISEASED : 0) | (automatonAlive ? AUTOMATON_ALIVE : 0));
+            }
+        }
+        for (int row = top; row < top + depth; row++) {
+            for (int col = left; col < left + width; col++) {
+                if (engine != null) {
+                    putInt(engine.getAge(row, col));
+                } else {
+                    Cell cell = field.getObjectAt(row, col);
+                    putDouble(cell == null ? 0 : cell.getAge());
+                }
+            }
+        }
+        if (engine == null) {
+            for (int row = top; row < top + depth; row++) {
+                for (int col = left; col < left + width; col++) {
+                    Cell cell = field.getObjectAt(row, col);
+                    putInt(cell == null ? 0 : cell.getColor());
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the locations of one block and restore them into the simulation.
+     */
+    private void readBlock(Simulator simulator, LifeEngine engine) throws IOException {
+        int top = getInt();
+        int left = getInt();
+        int depth = getInt();
+        int width = getInt();
+        if (depth < 0 || width < 0 || (long) depth * width > size) {
+            throw new IOException("Corrupt block of " + depth + " x " + width + " locations");
+        }
+        int locations = depth * width;
+        boolean[] alive = new boolean[locations];
+        for (int word = 0; word < (locations + 63) / 64; word++) {
+            long bits = getLong();
+            for (int i = word * 64; i < Math.min(locations, word * 64 + 64); i++) {
+                alive[i] = (bits & (1L << i)) != 0;
+            }
+        }
+        byte[] species = new byte[locations];
+        for (int i = 0; i < locations; i++) {
+            species[i] = getByte();
+            if (species[i] < 0 || species[i] >= Species.COUNT) {
+                throw new IOException("Unknown species id " + species[i]);
+            }
+        }
+        byte[] flags = new byte[locations];
+        for (int i = 0; i < locations; i++) {
+            flags[i] = getByte();
+        }
+
+        if (engine != null) {
+            for (int i = 0; i < locations; i++) {
+                engine.restore(top + i / width, left + i % width, species[i], alive[i], getInt(),
+                        (flags[i] & DISEASED) != 0, (flags[i] & AUTOMATON_ALIVE) != 0);
+            }
+            return;
+        }
+        double[] ages = new double[locations];
+        for (int i = 0; i < locations; i++) {
+            ages[i] = getDouble();
+        }
+        for (int i = 0; i < locations; i++) {
+            int color = getInt();
+            if (species[i] == Species.NONE) {
+                continue;
+            }
+            Cell cell = simulator.placeCell(top + i / width, left + i % width, species[i], color, alive[i]);
+            cell.setAge(ages[i]);
+            cell.restoreDiseased((flags[i] & DISEASED) != 0);
+            if (cell instanceof NonDeterministicCells) {
+                ((NonDeterministicCells) cell).setAutomatonAlive((flags[i] & AUTOMATON_ALIVE) != 0);
+            }
+        }
+    }
+
+    /**
+     * Make sure the next given number of bytes are in the mapped window,
+     * mapping the next part of the file if they are not.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (window != null && window.remaining() >= bytes) {
+            return;
+        }
+        long position = window == null ? 0 : windowStart + window.position();
+        if (position + bytes > size) {
+            throw new EOFException("Checkpoint ends after " + size + " bytes");
+        }
+        if (window != null && mode == FileChannel.MapMode.READ_WRITE) {
+            window.force();
+        }
+        windowStart = position;
+        window = channel.map(mode, position, Math.min(WINDOW, size - position));
+    }
+
+    private void putByte(int value) throws IOException {
+        ensure(1);
+        window.put((byte) value);
+    }
+
+    private void putInt(int value) throws IOException {
+        ensure(4);
+        window.putInt(value);
+    }
+
+    private void putLong(long value) throws IOException {
+        ensure(8);
+        window.putLong(value);
+    }
+
+    private void putDouble(double value) throws IOException {
+        ensure(8);
+        window.putDouble(value);
+    }
+
+    /**
+     * Write a length followed by the bytes, or a length of -1 for null.
+     */
+    private void putBytes(byte[] bytes) throws IOException {
+        putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            for (byte b : bytes) {
+                putByte(b);
+            }
+        }
+    }
+
+    private byte getByte() throws IOException {
+        ensure(1);
+        return window.get();
+    }
+
+    private int getInt() throws IOException {
+        ensure(4);
+        return window.getInt();
+    }
+
+    private long getLong() throws IOException {
+        ensure(8);
+        return window.getLong();
+    }
+
+    private double getDouble() throws IOException {
+        ensure(8);
+        return window.getDouble();
+    }
+
+    /**
+     * Read a string written with putBytes().
+     */
+    private String getString() throws IOException {
+        int length = getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > size) {
+            throw new IOException("Corrupt string of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = getByte();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
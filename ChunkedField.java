@@ -0,0 +1,549 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An engine whose grid has no edge. Locations are stored in square chunks of
+ * CHUNK_SIZE x CHUNK_SIZE, kept in a LongMap under their packed chunk
+ * coordinates and only allocated once something happens in them. The depth
+ * and width only describe the window the Simulator fills and shows.
+ *
+ * Every location outside the allocated chunks holds a dead cell of the
+ * background species, which is Species.NONE unless setBackground() is used.
+ * A dead cell only comes alive through Mycoplasma's birth rule, which needs
+ * living neighbours, so a chunk next to one with living cells on its border is
+ * all that needs allocating for patterns to grow past the window. A chunk
+ * whose cells are all dead background cells again is removed after the step,
+ * so memory follows the living area rather than its bounding box. As with
+ * Cell objects, a cell loses any disease when it dies, so dropping a chunk
+ * loses no disease. A dead cell whose age disease or recovery had changed
+ * does forget it and takes the age getSteps() of the untouched background.
+ * That only matters if the cell is born again, as it then dies of age at a
+ * different generation than it would on Cell objects.
+ *
+ * As in BitLifeEngine, all cells read the generation as it was at the start of
+ * the step. Disease spreads into a separate caught plane, and only to cells in
+ * allocated chunks.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class ChunkedField implements LifeEngine {
+    private static final int CHUNK_SHIFT = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // Width and depth of a chunk in locations.
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_AREA = CHUNK_SIZE * CHUNK_SIZE;
+    private static final double RECOVERY_AGE_FACTOR = 0.8; // As in CellRecovery.
+    private static final byte RECOVERING = 2; // Marks a diseased cell that recovers in this step.
+    private static final byte INFECTED = 4; // Marks a cell that caught the disease by chance in this step.
+
+    private final int depth, width;
+    private final LongMap<Chunk> chunks = new LongMap<>();
+    private int background = Species.NONE; // Species of the cells outside the chunks.
+    private int steps; // Generations stepped since the engine was cleared.
+    private final int[] living = new int[Species.COUNT]; // Living cells of each species.
+    private final int[] diseasedAlive = new int[Species.COUNT]; // Alive and diseased cells of each species.
+
+    /**
+     * A CHUNK_SIZE x CHUNK_SIZE block of locations, stored as in CompactField.
+     */
+    private static class Chunk {
+        final int chunkRow, chunkCol;
+        final byte[] species = new byte[CHUNK_AREA];
+        byte[] alive = new byte[CHUNK_AREA];
+        byte[] nextAlive = new byte[CHUNK_AREA];
+        final byte[] diseased = new byte[CHUNK_AREA];
+        final byte[] caught = new byte[CHUNK_AREA];
+        final byte[] automatonAlive = new byte[CHUNK_AREA];
+        final int[] born = new int[CHUNK_AREA];
+        int living; // Number of living cells.
+        final Chunk[] around = new Chunk[9]; // This chunk and its neighbours, looked up once per step.
+
+        Chunk(int chunkRow, int chunkCol, int background) {
+            this.chunkRow = chunkRow;
+            this.chunkCol = chunkCol;
+            Arrays.fill(species, (byte) background);
+        }
+    }
+
+    /**
+     * Create an empty engine. The field has no edge; the given dimensions are
+     * those of the window the Simulator populates and displays.
+     *
+     * @param depth The depth of the window.
+     * @param width The width of the window.
+     */
+    public ChunkedField(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+    }
+
+    public void clear() {
+        chunks.clear();
+        Arrays.fill(living, 0);
+        Arrays.fill(diseasedAlive, 0);
+        background = Species.NONE;
+        steps = 0;
+    }
+
+    /**
+     * Empty the field and fill every location with a dead cell of the given
+     * species, born in the current generation.
+     *
+     * @param species The species id.
+     */
+    public void setBackground(int species) {
+        clear();
+        background = species;
+    }
+
+    /**
+     * @return The species of the cells outside the allocated chunks.
+     */
+    public int getBackground() {
+        return background;
+    }
+
+    public void place(int row, int col, int species, boolean alive) {
+        Chunk chunk = chunkFor(row, col);
+        int index = indexOf(row, col);
+        chunk.living += (alive ? 1 : 0) - chunk.alive[index];
+        living[chunk.species[index]] -= chunk.alive[index];
+        diseasedAlive[chunk.species[index]] -= chunk.alive[index] & chunk.diseased[index];
+        living[species] += alive ? 1 : 0;
+        chunk.species[index] = (byte) species;
+        chunk.alive[index] = (byte) (alive ? 1 : 0);
+        chunk.diseased[index] = 0;
+        chunk.caught[index] = 0;
+        chunk.automatonAlive[index] = (byte) (alive ? 1 : 0); // A NonDeterministicCells automaton agrees with its cell.
+        chunk.born[index] = steps;
+    }
+
+    public void restore(int row, int col, int species, boolean alive, int age, boolean diseased,
+            boolean automatonAlive) {
+        place(row, col, species, alive);
+        Chunk chunk = chunkFor(row, col);
+        int index = indexOf(row, col);
+        chunk.born[index] = steps - age;
+        if (diseased) {
+            chunk.diseased[index] = 1;
+            diseasedAlive[species] += chunk.alive[index];
+        }
+        chunk.automatonAlive[index] = (byte) (automatonAlive ? 1 : 0);
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public void setSteps(int steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Return the top left location of every allocated chunk, as packed
+     * coordinates. Everywhere else holds dead background cells of age
+     * getSteps() that are not diseased.
+     *
+     * @return The packed coordinates, see Coordinates, in no particular order.
+     */
+    public long[] getChunkCorners() {
+        List<Chunk> all = chunks.values();
+        long[] corners = new long[all.size()];
+        for (int i = 0; i < corners.length; i++) {
+            Chunk chunk = all.get(i);
+            corners[i] = Coordinates.pack(chunk.chunkRow << CHUNK_SHIFT, chunk.chunkCol << CHUNK_SHIFT);
+        }
+        return corners;
+    }
+
+    /**
+     * @return The width and depth of a chunk in locations.
+     */
+    public static int getChunkSize() {
+        return CHUNK_SIZE;
+    }
+
+    /**
+     * Advance every allocated location by one generation.
+     *
+     * @param environment The field holding the temperature.
+     */
+    public void step(Field environment) {
+        boolean warm = environment.getTemperatureCondition().equals("Warm");
+        if (background != Species.NONE) {
+            for (Chunk chunk : chunks.values()) {
+                grow(chunk);
+            }
+        }
+        List<Chunk> all = chunks.values();
+        for (Chunk chunk : all) {
+            for (int i = 0; i < 9; i++) {
+                chunk.around[i] = chunks.get(Coordinates.pack(chunk.chunkRow + i / 3 - 1, chunk.chunkCol + i % 3 - 1));
+            }
+            infectCells(chunk);
+        }
+        for (Chunk chunk : all) {
+            for (int index = 0; index < CHUNK_AREA; index++) {
+                if (chunk.species[index] != Species.NONE) {
+                    act(chunk, index, warm);
+                }
+            }
+        }
+        steps++;
+        Arrays.fill(diseasedAlive, 0);
+        for (Chunk chunk : all) {
+            update(chunk);
+            Arrays.fill(chunk.around, null);
+            if (isBackground(chunk)) {
+                chunks.remove(Coordinates.pack(chunk.chunkRow, chunk.chunkCol));
+            }
+        }
+    }
+
+    /**
+     * Allocate the neighbours of a chunk on whose side, or corner, there are
+     * living cells, as background cells there may be born.
+     */
+    private void grow(Chunk chunk) {
+        if (chunk.living == 0) {
+            return;
+        }
+        int last = CHUNK_SIZE - 1;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                int fromRow = dr > 0 ? last : 0;
+                int toRow = dr < 0 ? 0 : last;
+                int fromCol = dc > 0 ? last : 0;
+                int toCol = dc < 0 ? 0 : last;
+                if ((dr != 0 || dc != 0) && anyAlive(chunk, fromRow, toRow, fromCol, toCol)) {
+                    int row = (chunk.chunkRow + dr) << CHUNK_SHIFT;
+                    int col = (chunk.chunkCol + dc) << CHUNK_SHIFT;
+                    chunkFor(row, col);
+                }
+            }
+        }
+    }
+
+    private boolean anyAlive(Chunk chunk, int fromRow, int toRow, int fromCol, int toCol) {
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = fromCol; c <= toCol; c++) {
+                if (chunk.alive[r * CHUNK_SIZE + c] != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Disease.infectCell() for every living cell in a chunk. Only the cells
+     * Disease.infectionMask() picks are looked at, a chunk's columns being part
+     * of the 64 of a mask.
+     */
+    private void infectCells(Chunk chunk) {
+        int firstCol = chunk.chunkCol << CHUNK_SHIFT;
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            long mask = Disease.infectionMask(steps, (chunk.chunkRow << CHUNK_SHIFT) + row, firstCol >> 6);
+            mask = (mask >>> (firstCol & 63)) & ((1L << CHUNK_SIZE) - 1);
+            for (; mask != 0; mask &= mask - 1) {
+                int index = row * CHUNK_SIZE + Long.numberOfTrailingZeros(mask);
+                if (chunk.alive[index] != 0 && Species.isDiseasable(chunk.species[index])
+                        && chunk.diseased[index] == 0) {
+                    chunk.diseased[index] = 1 | INFECTED;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply the act() of the cell's species to one location.
+     */
+    private void act(Chunk chunk, int index, boolean warm) {
+        int kind = chunk.species[index];
+        if (chunk.alive[index] == 0) {
+            actDead(chunk, index, kind);
+            return;
+        }
+        int age = steps - chunk.born[index];
+        boolean living = age <= Species.getMaxAge(kind); // checkAge()
+        int row = index >> CHUNK_SHIFT;
+        int col = index & CHUNK_MASK;
+        int neighbours = countLivingNeighbours(chunk, row, col);
+        chunk.nextAlive[index] = 0;
+
+        if (chunk.diseased[index] != 0) {
+            if (age + 100 < Species.getMaxAge(kind)) {
+                age += 100; // The cell age is increased by 100
+                chunk.born[index] = steps - age;
+                if (neighbours == 3) {
+                    chunk.nextAlive[index] = 1;
+                }
+            } else {
+                living = false; // setDead()
+            }
+            spreadDisease(chunk, row, col);
+        } else {
+            boolean next;
+            if (kind == Species.NONDETERMINISTIC) {
+                double chance = Randomizer.uniform(steps, coordinates(chunk, row, col), Randomizer.AUTOMATON);
+                next = Species.nextState(kind, living, neighbours, age, chunk.automatonAlive[index] != 0, chance);
+                chunk.automatonAlive[index] = (byte) (next ? 1 : 0);
+            } else {
+                next = Species.nextState(kind, living, neighbours, age, false, 0);
+            }
+            chunk.nextAlive[index] = (byte) (next ? 1 : 0);
+        }
+
+        // CellRecovery.attemptRecovery()
+        if (warm && living && chunk.diseased[index] != 0 && Species.isDiseasable(kind) && Species.isMutualistic(kind)) {
+            chunk.nextAlive[index] = 1;
+            chunk.born[index] = steps - (int) (age * RECOVERY_AGE_FACTOR);
+            chunk.diseased[index] |= RECOVERING;
+        }
+        if (!living) {
+            chunk.nextAlive[index] = 0; // setDead() is final.
+            chunk.automatonAlive[index] = 0;
+        }
+    }
+
+    /**
+     * Cell.actDead() for one location: only a dead Mycoplasma can come alive.
+     */
+    private void actDead(Chunk chunk, int index, int kind) {
+        boolean born = kind == Species.MYCOPLASMA
+                && Mycoplasma.nextState(false, countLivingNeighbours(chunk, index >> CHUNK_SHIFT, index & CHUNK_MASK));
+        chunk.nextAlive[index] = (byte) (born ? 1 : 0);
+    }
+
+    /**
+     * Count the living neighbours of a location in a chunk, looking into the
+     * chunks around it at the edges.
+     */
+    private int countLivingNeighbours(Chunk chunk, int row, int col) {
+        int count = 0;
+        for (int r = row - 1; r <= row + 1; r++) {
+            for (int c = col - 1; c <= col + 1; c++) {
+                if (r == row && c == col) {
+                    continue;
+                }
+                Chunk other = neighbourChunk(chunk, r, c);
+                if (other != null && other.alive[(r & CHUNK_MASK) * CHUNK_SIZE + (c & CHUNK_MASK)] != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Disease.spreadDisease() for one location: neighbours that were not
+     * diseased at the start of the step may catch the disease, which they show
+     * from the next generation.
+     */
+    private void spreadDisease(Chunk chunk, int row, int col) {
+        for (int r = row - 1; r <= row + 1; r++) {
+            for (int c = col - 1; c <= col + 1; c++) {
+                Chunk other = neighbourChunk(chunk, r, c);
+                if ((r == row && c == col) || other == null) {
+                    continue;
+                }
+                int index = (r & CHUNK_MASK) * CHUNK_SIZE + (c & CHUNK_MASK);
+                if (other.alive[index] != 0
+                        && (other.diseased[index] == 0 || (other.diseased[index] & INFECTED) != 0)
+                        && Randomizer.uniform(steps, coordinates(chunk, row, col),
+                                Randomizer.SPREAD + (r - row + 1) * 3 + (c - col + 1)) <= Disease.CELL_DISEASE_PROB) {
+                    other.caught[index] = 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The chunk holding a location given relative to another chunk, with
+     *         row and column from -1 to CHUNK_SIZE, or null if not allocated.
+     */
+    private Chunk neighbourChunk(Chunk chunk, int row, int col) {
+        int dr = row < 0 ? 0 : row < CHUNK_SIZE ? 1 : 2;
+        int dc = col < 0 ? 0 : col < CHUNK_SIZE ? 1 : 2;
+        return chunk.around[dr * 3 + dc];
+    }
+
+    /**
+     * Give every cell in a chunk its next state.
+     */
+    private void update(Chunk chunk) {
+        byte[] swap = chunk.alive;
+        chunk.alive = chunk.nextAlive;
+        chunk.nextAlive = swap;
+        int living = 0;
+        for (int index = 0; index < CHUNK_AREA; index++) {
+            living += chunk.alive[index];
+            this.living[chunk.species[index]] += chunk.alive[index] - chunk.nextAlive[index];
+            if ((chunk.diseased[index] & RECOVERING) != 0) {
+                chunk.diseased[index] = 0;
+            }
+            chunk.diseased[index] &= 1; // Forget that it was infected in this step.
+            if (chunk.caught[index] != 0) {
+                chunk.diseased[index] = 1;
+                chunk.caught[index] = 0;
+            }
+            chunk.diseased[index] &= chunk.alive[index]; // A dead cell is not diseased.
+            diseasedAlive[chunk.species[index]] += chunk.alive[index] & chunk.diseased[index];
+        }
+        chunk.living = living;
+    }
+
+    /**
+     * @return true if every cell in the chunk is a dead cell of the background
+     *         species that is not diseased, so that the chunk can be dropped.
+     */
+    private boolean isBackground(Chunk chunk) {
+        if (chunk.living != 0) {
+            return false;
+        }
+        for (int index = 0; index < CHUNK_AREA; index++) {
+            if (chunk.species[index] != background || chunk.diseased[index] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the chunk holding the given location, allocating it filled with the
+     * background if needed.
+     */
+    private Chunk chunkFor(int row, int col) {
+        long key = Coordinates.pack(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT);
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new Chunk(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT, background);
+            chunks.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * @return The allocated chunk holding the given location, or null.
+     */
+    private Chunk findChunk(int row, int col) {
+        return chunks.get(Coordinates.pack(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT));
+    }
+
+    /**
+     * @return The packed coordinates of a location given within a chunk.
+     */
+    private static long coordinates(Chunk chunk, int row, int col) {
+        return Coordinates.pack((chunk.chunkRow << CHUNK_SHIFT) + row, (chunk.chunkCol << CHUNK_SHIFT) + col);
+    }
+
+    private static int indexOf(int row, int col) {
+        return (row & CHUNK_MASK) * CHUNK_SIZE + (col & CHUNK_MASK);
+    }
+
+    public boolean isAlive(int row, int col) {
+        Chunk chunk = findChunk(row, col);
+        return chunk != null && chunk.alive[indexOf(row, col)] != 0;
+    }
+
+    public int getSpecies(int row, int col) {
+        Chunk chunk = findChunk(row, col);
+        return chunk == null ? background : chunk.species[indexOf(row, col)];
+    }
+
+    public boolean isDiseased(int row, int col) {
+        Chunk chunk = findChunk(row, col);
+        return chunk != null && chunk.diseased[indexOf(row, col)] != 0;
+    }
+
+    /**
+     * Return the age of the cell at the given location.
+     *
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The age in generations.
+     */
+    public int getAge(int row, int col) {
+        Chunk chunk = findChunk(row, col);
+        return chunk == null ? steps : steps - chunk.born[indexOf(row, col)];
+    }
+
+    public boolean isAutomatonAlive(int row, int col) {
+        Chunk chunk = findChunk(row, col);
+        return chunk != null && chunk.automatonAlive[indexOf(row, col)] != 0;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getLivingCount(int species) {
+        return living[species];
+    }
+
+    public int getDiseasedAliveCount() {
+        int count = 0;
+        for (int kind = 0; kind < Species.COUNT; kind++) {
+            count += diseasedAlive[kind];
+        }
+        return count;
+    }
+
+    public int getDiseasedAliveCount(int species) {
+        return diseasedAlive[species];
+    }
+
+    /**
+     * @return The number of living cells anywhere on the field.
+     */
+    public int getPopulation() {
+        int count = 0;
+        for (Chunk chunk : chunks.values()) {
+            count += chunk.living;
+        }
+        return count;
+    }
+
+    /**
+     * Return the smallest rectangle holding every living cell, inside the
+     * window or not.
+     *
+     * @return The top row, left column, bottom row and right column, the last
+     *         two exclusive, or null if no cell is alive.
+     */
+    public int[] getLivingBounds() {
+        int[] bounds = null;
+        for (Chunk chunk : chunks.values()) {
+            if (chunk.living == 0) {
+                continue;
+            }
+            for (int index = 0; index < CHUNK_AREA; index++) {
+                if (chunk.alive[index] == 0) {
+                    continue;
+                }
+                int row = (chunk.chunkRow << CHUNK_SHIFT) + (index >> CHUNK_SHIFT);
+                int col = (chunk.chunkCol << CHUNK_SHIFT) + (index & CHUNK_MASK);
+                if (bounds == null) {
+                    bounds = new int[] { row, col, row + 1, col + 1 };
+                } else {
+                    bounds[0] = Math.min(bounds[0], row);
+                    bounds[1] = Math.min(bounds[1], col);
+                    bounds[2] = Math.max(bounds[2], row + 1);
+                    bounds[3] = Math.max(bounds[3], col + 1);
+                }
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * @return The number of chunks currently allocated.
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+}
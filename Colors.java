@@ -0,0 +1,18 @@
+/**
+ * The colours cells are drawn in, as ARGB values with 8 bits for each of
+ * alpha, red, green and blue, the same as the JavaFX colours of those names.
+ * The model only ever handles these ints, so it runs without JavaFX on the
+ * classpath; the views turn them into pixels, see FieldCanvas.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class Colors {
+    public static final int WHITE = 0xFFFFFFFF;
+    public static final int BLACK = 0xFF000000;
+    public static final int ORANGE = 0xFFFFA500;
+    public static final int PURPLE = 0xFF800080;
+    public static final int BLUE = 0xFF0000FF;
+    public static final int GREEN = 0xFF008000;
+    public static final int YELLOW = 0xFFFFFF00;
+}
@@ -0,0 +1,597 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A field that keeps the state of every location in primitive parallel arrays
+ * instead of Cell objects. Location (row, col) is stored at index
+ * row * width + col of each array. The rules applied in step() are the ones the
+ * Cell subclasses use in act(), so a run on a CompactField behaves like a run on
+ * Cell objects while using a few bytes per location.
+ *
+ * The field is divided into square tiles. A tile is only stepped when it or a
+ * neighbouring tile changed in the last generation, when one of its cells
+ * reaches an age at which its rule changes, or when it holds a cell whose next
+ * step takes a random number that could change it: a living diseased cell, a
+ * living NonDeterministicCells with too few or too many neighbours, or a cell
+ * of a species stepped by a BehaviourTable. Every other tile would come out
+ * unchanged, so it is left asleep. Chance infections are drawn only where
+ * Disease.infectionMask() puts them, and wake a sleeping tile only when they
+ * hit a living cell that can catch a disease and has none.
+ *
+ * As with Cell objects, every cell reads the generation as it was at the start
+ * of the step and writes only to itself, except for disease spreading to its
+ * neighbours: that only ever sets a flag in a separate plane which nobody reads
+ * until the step is done. So the order in which cells act does not matter, and
+ * with more than one thread, bands of tile rows are stepped in parallel on a
+ * ForkJoinPool.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class CompactField implements LifeEngine {
+    private static final double RECOVERY_AGE_FACTOR = 0.8; // As in CellRecovery.
+    private static final int TILE_SIZE = 16; // Width and depth of a tile in locations.
+    private static final byte RECOVERING = 2; // Marks a diseased cell that recovers in this step.
+    private static final byte INFECTED = 4; // Marks a cell that caught the disease by chance in this step.
+
+    private final int depth, width;
+    private final byte[] species; // Species id of each location, Species.NONE if empty.
+    private final byte[] alive; // 1 if the cell is alive in this generation.
+    private final byte[] nextAlive; // 1 if the cell will be alive in the next generation.
+    private final byte[] diseased; // 1 if the cell is diseased.
+    private final byte[] caught; // 1 if the cell caught the disease from a neighbour in this step.
+    private final byte[] automatonAlive; // The NonDeterministicCells automaton state.
+    private final byte[] behaviourState; // The BehaviourTable state, for species given one.
+    private final BehaviourTable[] behaviours = new BehaviourTable[Species.COUNT]; // null for a species' own rule.
+    private final int[] born; // The step at which the cell's age was zero.
+    private int steps; // Number of generations stepped, so age = steps - born.
+    private int environment; // The BehaviourTable environment of this step.
+    private final int[] living = new int[Species.COUNT]; // Living cells of each species.
+    private final int[] diseasedAlive = new int[Species.COUNT]; // Alive and diseased cells of each species.
+
+    private final int tileRows, tileCols;
+    private byte[] tileChanged; // 1 if the tile changed in the last generation.
+    private byte[] tileChanging; // 1 if the tile changes in this generation.
+    private final byte[] tileAwake; // 1 if the tile is stepped in this generation.
+    private final byte[] tileRandom; // 1 if the tile holds a cell that behaves randomly.
+    private final int[] tileWakeStep; // The step at which a cell in the tile reaches a rule age.
+    private boolean allDirty; // Step every tile, as cells have been placed.
+    private int tilesStepped; // Number of tiles stepped in the last generation.
+    private ForkJoinPool pool; // Steps the field in parallel, null for a single thread.
+
+    /**
+     * Create an empty compact field of the given dimensions.
+     *
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public CompactField(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        int size = depth * width;
+        species = new byte[size];
+        alive = new byte[size];
+        nextAlive = new byte[size];
+        diseased = new byte[size];
+        caught = new byte[size];
+        automatonAlive = new byte[size];
+        behaviourState = new byte[size];
+        born = new int[size];
+        tileRows = (depth + TILE_SIZE - 1) / TILE_SIZE;
+        tileCols = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tiles = tileRows * tileCols;
+        tileChanged = new byte[tiles];
+        tileChanging = new byte[tiles];
+        tileAwake = new byte[tiles];
+        tileRandom = new byte[tiles];
+        tileWakeStep = new int[tiles];
+        allDirty = true;
+    }
+
+    /**
+     * Empty every location.
+     */
+    public void clear() {
+        Arrays.fill(species, (byte) 0);
+        Arrays.fill(alive, (byte) 0);
+        Arrays.fill(nextAlive, (byte) 0);
+        Arrays.fill(diseased, (byte) 0);
+        Arrays.fill(caught, (byte) 0);
+        Arrays.fill(automatonAlive, (byte) 0);
+        Arrays.fill(behaviourState, (byte) 0);
+        Arrays.fill(born, 0);
+        Arrays.fill(living, 0);
+        Arrays.fill(diseasedAlive, 0);
+        steps = 0;
+        allDirty = true;
+    }
+
+    /**
+     * Place a new life form at the given location, in the same initial state
+     * the Cell constructors give it.
+     *
+     * @param row     Row coordinate of the location.
+     * @param col     Column coordinate of the location.
+     * @param species The species id.
+     * @param alive   Whether the new life form starts alive.
+     */
+    public void place(int row, int col, int species, boolean alive) {
+        int index = row * width + col;
+        living[this.species[index]] -= this.alive[index];
+        if (this.alive[index] != 0 && diseased[index] != 0) {
+            diseasedAlive[this.species[index]]--;
+        }
+        living[species] += alive ? 1 : 0;
+        this.species[index] = (byte) species;
+        this.alive[index] = (byte) (alive ? 1 : 0);
+        nextAlive[index] = 0;
+        diseased[index] = 0;
+        automatonAlive[index] = (byte) (alive ? 1 : 0); // A NonDeterministicCells automaton agrees with its cell.
+        if (behaviours[species] != null) {
+            behaviourState[index] = (byte) behaviours[species].initialState(alive);
+        }
+        born[index] = steps;
+        allDirty = true;
+    }
+
+    public void restore(int row, int col, int species, boolean alive, int age, boolean diseased,
+            boolean automatonAlive) {
+        place(row, col, species, alive);
+        int index = row * width + col;
+        setAge(index, age);
+        if (diseased) {
+            this.diseased[index] = 1;
+            diseasedAlive[species] += this.alive[index];
+        }
+        this.automatonAlive[index] = (byte) (automatonAlive ? 1 : 0);
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public void setSteps(int steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Set the number of threads used to step the field. The result does not
+     * depend on the number of threads, as every random number is drawn with
+     * Randomizer.uniform() for the cell it is about.
+     *
+     * @param threads The number of threads, at least one.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * @return The number of threads used to step the field.
+     */
+    public int getThreads() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Step the cells of a species through a compiled automaton instead of the
+     * species' own rule, while they are not diseased. Disease, recovery and
+     * death of old age work as before; a cell they bring to life or kill goes
+     * back to BehaviourTable.initialState() when it is next stepped. Set it
+     * before placing the cells, which start in BehaviourTable.initialState();
+     * the states are not saved in checkpoints.
+     *
+     * @param species   The species id.
+     * @param behaviour The automaton, or null to go back to the species' rule.
+     */
+    public void setBehaviour(int species, BehaviourTable behaviour) {
+        behaviours[species] = behaviour;
+        allDirty = true;
+    }
+
+    /**
+     * Advance every location by one generation. Every cell in an awake tile
+     * decides its next state from the current generation, then every cell
+     * takes on its next state.
+     *
+     * @param environment The field holding the temperature and time of day.
+     */
+    public void step(Field environment) {
+        boolean warm = environment.getTemperatureCondition().equals("Warm");
+        this.environment = BehaviourTable.environment(environment.getTemperatureCondition(), environment.isDay());
+        wakeTiles();
+        if (pool != null) {
+            pool.invoke(new Band(0, tileRows, warm, false));
+            steps++;
+            pool.invoke(new Band(0, tileRows, warm, true));
+        } else {
+            actTiles(0, tileRows, warm);
+            steps++;
+            updateTiles(0, tileRows);
+        }
+        tilesStepped = 0;
+        for (byte awake : tileAwake) {
+            tilesStepped += awake;
+        }
+        allDirty = false;
+    }
+
+    /**
+     * Steps, or updates, a band of tile rows in parallel by splitting it in half
+     * until each part is a single tile row.
+     */
+    private class Band extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int fromTileRow, toTileRow;
+        private final boolean warm;
+        private final boolean update; // Give cells their next state rather than act.
+
+        Band(int fromTileRow, int toTileRow, boolean warm, boolean update) {
+            this.fromTileRow = fromTileRow;
+            this.toTileRow = toTileRow;
+            this.warm = warm;
+            this.update = update;
+        }
+
+        protected void compute() {
+            if (toTileRow - fromTileRow > 1) {
+                int middle = (fromTileRow + toTileRow) >>> 1;
+                invokeAll(new Band(fromTileRow, middle, warm, update), new Band(middle, toTileRow, warm, update));
+            } else if (update) {
+                updateTiles(fromTileRow, toTileRow);
+            } else {
+                actTiles(fromTileRow, toTileRow, warm);
+            }
+        }
+    }
+
+    /**
+     * Infect the cells of a band of tile rows by chance, then let every cell in
+     * its awake tiles act, and note which of those tiles hold a cell whose next
+     * step takes a random number.
+     */
+    private void actTiles(int fromTileRow, int toTileRow, boolean warm) {
+        infectCells(fromTileRow, toTileRow);
+        int rowEnd = Math.min(depth, toTileRow * TILE_SIZE);
+        for (int row = fromTileRow * TILE_SIZE; row < rowEnd; row++) {
+            int tileBase = (row / TILE_SIZE) * tileCols;
+            for (int tileCol = 0; tileCol < tileCols; tileCol++) {
+                if (tileAwake[tileBase + tileCol] == 0) {
+                    continue;
+                }
+                int end = Math.min(width, (tileCol + 1) * TILE_SIZE);
+                boolean random = false;
+                for (int col = tileCol * TILE_SIZE, index = row * width + col; col < end; col++, index++) {
+                    if (species[index] != Species.NONE) {
+                        random |= act(row, col, index, warm);
+                    }
+                }
+                if (row % TILE_SIZE == 0 || random) {
+                    tileRandom[tileBase + tileCol] = (byte) (random ? 1 : 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decide which tiles need stepping from what happened in the last generation.
+     */
+    private void wakeTiles() {
+        byte[] swap = tileChanged;
+        tileChanged = tileChanging;
+        tileChanging = swap;
+        Arrays.fill(tileChanging, (byte) 0);
+        for (int tileRow = 0; tileRow < tileRows; tileRow++) {
+            for (int tileCol = 0; tileCol < tileCols; tileCol++) {
+                int tile = tileRow * tileCols + tileCol;
+                boolean awake = allDirty || tileRandom[tile] != 0 || tileWakeStep[tile] <= steps;
+                for (int r = Math.max(0, tileRow - 1); !awake && r <= Math.min(tileRows - 1, tileRow + 1); r++) {
+                    for (int c = Math.max(0, tileCol - 1); c <= Math.min(tileCols - 1, tileCol + 1); c++) {
+                        awake |= tileChanged[r * tileCols + c] != 0;
+                    }
+                }
+                tileAwake[tile] = (byte) (awake ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Give the cells of every awake or changed tile in a band of tile rows their
+     * next state, and work out for each tile whether it changed and when it next
+     * has to be stepped.
+     */
+    private void updateTiles(int fromTileRow, int toTileRow) {
+        int[] born = new int[Species.COUNT]; // Births less deaths.
+        int[] change = new int[Species.COUNT]; // Change in the number of alive and diseased cells.
+        for (int tile = fromTileRow * tileCols; tile < toTileRow * tileCols; tile++) {
+            if (tileAwake[tile] == 0 && tileChanging[tile] == 0) {
+                continue;
+            }
+            boolean random = tileRandom[tile] != 0; // From act(), for an awake tile.
+            int wakeStep = Integer.MAX_VALUE;
+            int rowEnd = Math.min(depth, (tile / tileCols + 1) * TILE_SIZE);
+            int colStart = (tile % tileCols) * TILE_SIZE;
+            int colEnd = Math.min(width, colStart + TILE_SIZE);
+            for (int row = (tile / tileCols) * TILE_SIZE; row < rowEnd; row++) {
+                for (int index = row * width + colStart; index < row * width + colEnd; index++) {
+                    int kind = species[index];
+                    if (kind == Species.NONE) {
+                        continue;
+                    }
+                    int before = alive[index] != 0 && diseased[index] != 0 ? 1 : 0;
+                    if (alive[index] != nextAlive[index]) {
+                        born[kind] += nextAlive[index] - alive[index];
+                        alive[index] = nextAlive[index];
+                        tileChanging[tile] = 1;
+                    }
+                    if ((diseased[index] & RECOVERING) != 0) {
+                        diseased[index] = 0;
+                    }
+                    diseased[index] &= 1; // Forget that it was infected in this step.
+                    if (caught[index] != 0) {
+                        diseased[index] = 1;
+                        caught[index] = 0;
+                    }
+                    if (alive[index] == 0) {
+                        diseased[index] = 0; // A dead cell is not diseased.
+                    }
+                    change[kind] += (alive[index] != 0 && diseased[index] != 0 ? 1 : 0) - before;
+                    random |= diseased[index] != 0 || behaviours[kind] != null;
+                    if (alive[index] != 0) {
+                        // The first step at which the cell's age is a rule age it has not acted at yet.
+                        int age = getAge(index);
+                        wakeStep = Math.min(wakeStep, steps + Species.nextRuleAge(kind, age - 1) - age);
+                    }
+                }
+            }
+            tileRandom[tile] = (byte) (random ? 1 : 0);
+            tileWakeStep[tile] = wakeStep;
+        }
+        synchronized (diseasedAlive) {
+            for (int kind = 0; kind < Species.COUNT; kind++) {
+                living[kind] += born[kind];
+                diseasedAlive[kind] += change[kind];
+            }
+        }
+    }
+
+    /**
+     * Disease.infectCell() for every living cell of a band of tile rows, done
+     * before any cell of the band acts. Only the cells Disease.infectionMask()
+     * picks are looked at. A cell in another band only asks whether its
+     * neighbours were diseased at the start of the step, which an infection
+     * does not change, so bands need not wait for each other.
+     */
+    private void infectCells(int fromTileRow, int toTileRow) {
+        int[] infected = new int[Species.COUNT];
+        int rowEnd = Math.min(depth, toTileRow * TILE_SIZE);
+        for (int row = fromTileRow * TILE_SIZE; row < rowEnd; row++) {
+            for (int segment = 0; segment << 6 < width; segment++) {
+                long mask = Disease.infectionMask(steps, row, segment);
+                for (; mask != 0; mask &= mask - 1) {
+                    int col = (segment << 6) + Long.numberOfTrailingZeros(mask);
+                    int index = row * width + col;
+                    if (col < width && alive[index] != 0 && Species.isDiseasable(species[index])
+                            && diseased[index] == 0) {
+                        diseased[index] = 1 | INFECTED;
+                        infected[species[index]]++;
+                        wakeTile(row, col);
+                    }
+                }
+            }
+        }
+        synchronized (diseasedAlive) {
+            for (int kind = 0; kind < Species.COUNT; kind++) {
+                diseasedAlive[kind] += infected[kind];
+            }
+        }
+    }
+
+    /**
+     * Wake the tile holding the given location for this step, as it has changed.
+     */
+    private void wakeTile(int row, int col) {
+        int tile = (row / TILE_SIZE) * tileCols + col / TILE_SIZE;
+        tileAwake[tile] = 1;
+        tileChanging[tile] = 1;
+    }
+
+    /**
+     * Apply the act() of the cell's species to one location, reading only the
+     * state at the start of the step. A cell that dies of age or disease is not
+     * seen as dead by its neighbours until the next generation, and disease
+     * spreads into the caught plane rather than straight to the neighbours. As
+     * in Disease.wasDiseased(), a neighbour infected by chance in this step can
+     * still catch it.
+     * Disease.infectCell() has already been applied. A cell that dies of age
+     * or disease stays dead, as setDead() makes it on Cell objects.
+     *
+     * @return true if the cell used a random number that could have changed
+     *         its state, so that it may change even if nothing around it does.
+     */
+    private boolean act(int row, int col, int index, boolean warm) {
+        int kind = species[index];
+        if (alive[index] == 0) {
+            actDead(row, col, index, kind);
+            return false;
+        }
+        boolean living = getAge(index) <= Species.getMaxAge(kind); // checkAge()
+        int neighbours = countLivingNeighbours(row, col);
+        boolean random = false;
+        nextAlive[index] = 0;
+
+        if (diseased[index] != 0) {
+            int age = getAge(index);
+            if (age + 100 < Species.getMaxAge(kind)) {
+                setAge(index, age + 100); // The cell age is increased by 100
+                if (neighbours == 3) {
+                    nextAlive[index] = 1;
+                }
+            } else {
+                living = false; // setDead()
+            }
+            for (int r = Math.max(0, row - 1); r <= Math.min(depth - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++) {
+                    int other = r * width + c;
+                    if (other != index && alive[other] != 0
+                            && (diseased[other] == 0 || (diseased[other] & INFECTED) != 0)
+                            && Randomizer.uniform(steps, Coordinates.pack(row, col),
+                                    Randomizer.SPREAD + (r - row + 1) * 3 + (c - col + 1)) <= Disease.CELL_DISEASE_PROB) {
+                        caught[other] = 1;
+                        tileChanging[(r / TILE_SIZE) * tileCols + c / TILE_SIZE] = 1;
+                    }
+                }
+            }
+        } else {
+            // A living NonDeterministicCells only draws a deciding number with
+            // too few or too many neighbours, or with two and a DEAD automaton.
+            random = kind == Species.NONDETERMINISTIC && behaviours[kind] == null
+                    && (automatonAlive[index] != 0 ? neighbours < 2 || neighbours > 3 : neighbours == 2);
+            nextAlive[index] = (byte) (nextState(row, col, index, kind, living, neighbours) ? 1 : 0);
+        }
+
+        // CellRecovery.attemptRecovery()
+        if (warm && living && diseased[index] != 0 && Species.isDiseasable(kind) && Species.isMutualistic(kind)) {
+            nextAlive[index] = 1;
+            setAge(index, (int) (getAge(index) * RECOVERY_AGE_FACTOR));
+            diseased[index] |= RECOVERING;
+        }
+        if (!living) {
+            nextAlive[index] = 0; // setDead() is final.
+            automatonAlive[index] = 0;
+        }
+        return random;
+    }
+
+    /**
+     * Cell.actDead() for one location: a dead cell only comes alive through a
+     * birth rule, Mycoplasma's or a behaviour table's.
+     */
+    private void actDead(int row, int col, int index, int kind) {
+        boolean born = (kind == Species.MYCOPLASMA || behaviours[kind] != null)
+                && nextState(row, col, index, kind, false, countLivingNeighbours(row, col));
+        nextAlive[index] = (byte) (born ? 1 : 0);
+    }
+
+    /**
+     * The rule of the cell's species for a cell that is not diseased.
+     */
+    private boolean nextState(int row, int col, int index, int kind, boolean living, int neighbours) {
+        BehaviourTable behaviour = behaviours[kind];
+        if (behaviour != null) {
+            int state = behaviourState[index] & 0xFF;
+            if (behaviour.isAlive(state) != living) {
+                state = behaviour.initialState(living); // Disease, recovery or age changed the cell.
+            }
+            double chance = Randomizer.uniform(steps, Coordinates.pack(row, col), Randomizer.AUTOMATON);
+            state = behaviour.next(state, neighbours, environment, chance);
+            behaviourState[index] = (byte) state;
+            return behaviour.isAlive(state) && getAge(index) <= Species.getMaxAge(kind);
+        }
+        if (kind != Species.NONDETERMINISTIC) {
+            return Species.nextState(kind, living, neighbours, getAge(index), false, 0);
+        }
+        double chance = Randomizer.uniform(steps, Coordinates.pack(row, col), Randomizer.AUTOMATON);
+        boolean next = Species.nextState(kind, living, neighbours, getAge(index), automatonAlive[index] != 0, chance);
+        automatonAlive[index] = (byte) (next ? 1 : 0);
+        return next;
+    }
+
+    /**
+     * Count the living cells adjacent to the given location.
+     */
+    private int countLivingNeighbours(int row, int col) {
+        int count = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(depth - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++) {
+                count += alive[r * width + c];
+            }
+        }
+        return count - alive[row * width + col];
+    }
+
+    private int getAge(int index) {
+        return steps - born[index];
+    }
+
+    private void setAge(int index, int age) {
+        born[index] = steps - age;
+    }
+
+    public boolean isAlive(int row, int col) {
+        return alive[row * width + col] != 0;
+    }
+
+    public int getSpecies(int row, int col) {
+        return species[row * width + col];
+    }
+
+    public boolean isDiseased(int row, int col) {
+        return diseased[row * width + col] != 0;
+    }
+
+    /**
+     * Return the age of the cell at the given location.
+     *
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The age in generations.
+     */
+    public int getAge(int row, int col) {
+        return getAge(row * width + col);
+    }
+
+    public boolean isAutomatonAlive(int row, int col) {
+        return automatonAlive[row * width + col] != 0;
+    }
+
+    /**
+     * @return The number of tiles stepped in the last generation.
+     */
+    public int getTilesStepped() {
+        return tilesStepped;
+    }
+
+    /**
+     * @return The number of tiles the field is divided into.
+     */
+    public int getTileCount() {
+        return tileAwake.length;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getLivingCount(int species) {
+        return living[species];
+    }
+
+    /**
+     * Count the cells that are both alive and diseased.
+     *
+     * @return The number of diseased alive cells.
+     */
+    public int getDiseasedAliveCount() {
+        int count = 0;
+        for (int kind = 0; kind < Species.COUNT; kind++) {
+            count += diseasedAlive[kind];
+        }
+        return count;
+    }
+
+    public int getDiseasedAliveCount(int species) {
+        return diseasedAlive[species];
+    }
+}
@@ -0,0 +1,260 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An NFA prepared for fast simulation. Its states are numbered, and a set of
+ * states is a long[] with one bit per state. The input symbols are numbered
+ * too, and for every state and symbol the states the symbol leads to, together
+ * with everything reachable from them by epsilon-transitions, are worked out
+ * once as such a set. Reading a symbol is then an OR of those sets for the
+ * states in use, a word at a time, and accepts() allocates nothing.
+ *
+ * The states are those reachable from the start state when the CompiledNFA is
+ * created; transitions added afterwards are not seen. Only symbols of one
+ * character can match an input, as NFA.accepts() reads the input one character
+ * at a time, and NFAState.EPSILON is never an input symbol.
+ *
+ * accepts(CharSequence) uses sets kept in the object, so only one thread may
+ * call it at a time. Threads sharing a CompiledNFA should each create their
+ * own sets with newStateSet() and pass them to accepts(CharSequence, long[],
+ * long[]).
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class CompiledNFA {
+    private static final int ASCII = 128; // Characters looked up directly rather than searched for.
+
+    private final NFAState[] states; // Every state reachable from the start, numbered.
+    private final int words; // The longs in a set of states.
+    private final String[] symbols; // The symbols, by id.
+    private final int[] asciiSymbols = new int[ASCII]; // Symbol id of each ASCII character, -1 if none.
+    private final char[] otherChars; // Other characters that are symbols, sorted.
+    private final int[] otherSymbols; // Their symbol ids.
+    private final long[] startSet; // The epsilon closure of the start state.
+    private final long[] acceptingSet; // The accepting states.
+    private final long[] moves; // The set a symbol leads to from a state, at (symbol * states + state) * words.
+    private final long[] current, next; // The sets accepts(CharSequence) works in.
+
+    /**
+     * Compile the given automaton.
+     *
+     * @param nfa The automaton, with all its transitions added.
+     */
+    public CompiledNFA(NFA nfa) {
+        // Number every state reachable from the start, and collect the symbols.
+        Map<NFAState, Integer> numbers = new IdentityHashMap<>();
+        List<NFAState> found = new ArrayList<>();
+        Map<String, Integer> symbolIds = new HashMap<>();
+        found.add(nfa.getStartState());
+        numbers.put(nfa.getStartState(), 0);
+        for (int i = 0; i < found.size(); i++) {
+            NFAState state = found.get(i);
+            for (String symbol : state.getSymbols()) {
+                if (symbol.length() == 1 && !symbol.equals(NFAState.EPSILON) && !symbolIds.containsKey(symbol)) {
+                    symbolIds.put(symbol, symbolIds.size());
+                }
+                for (NFAState nextState : state.getNextStates(symbol)) {
+                    if (!numbers.containsKey(nextState)) {
+                        numbers.put(nextState, found.size());
+                        found.add(nextState);
+                    }
+                }
+            }
+        }
+        states = found.toArray(new NFAState[0]);
+        words = (states.length + 63) >>> 6;
+
+        symbols = new String[symbolIds.size()];
+        for (Map.Entry<String, Integer> entry : symbolIds.entrySet()) {
+            symbols[entry.getValue()] = entry.getKey();
+        }
+        char[] sorted = new char[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            sorted[i] = symbols[i].charAt(0);
+        }
+        Arrays.sort(sorted);
+        Arrays.fill(asciiSymbols, -1);
+        int ascii = 0;
+        while (ascii < sorted.length && sorted[ascii] < ASCII) {
+            asciiSymbols[sorted[ascii]] = symbolIds.get(String.valueOf(sorted[ascii]));
+            ascii++;
+        }
+        otherChars = Arrays.copyOfRange(sorted, ascii, sorted.length);
+        otherSymbols = new int[otherChars.length];
+        for (int i = 0; i < otherChars.length; i++) {
+            otherSymbols[i] = symbolIds.get(String.valueOf(otherChars[i]));
+        }
+
+        // The epsilon closure of each state, found without recursion so that
+        // long chains of epsilon-transitions cannot overflow the stack.
+        long[] closures = new long[states.length * words];
+        int[] stack = new int[states.length];
+        for (int s = 0; s < states.length; s++) {
+            int base = s * words;
+            int top = 0;
+            stack[top++] = s;
+            closures[base + (s >>> 6)] |= 1L << s;
+            while (top > 0) {
+                for (NFAState nextState : states[stack[--top]].getNextStates(NFAState.EPSILON)) {
+                    int n = numbers.get(nextState);
+                    if ((closures[base + (n >>> 6)] & (1L << n)) == 0) {
+                        closures[base + (n >>> 6)] |= 1L << n;
+                        stack[top++] = n;
+                    }
+                }
+            }
+        }
+
+        moves = new long[symbols.length * states.length * words];
+        for (int symbol = 0; symbol < symbols.length; symbol++) {
+            for (int s = 0; s < states.length; s++) {
+                int to = (symbol * states.length + s) * words;
+                for (NFAState nextState : states[s].getNextStates(symbols[symbol])) {
+                    int from = numbers.get(nextState) * words;
+                    for (int w = 0; w < words; w++) {
+                        moves[to + w] |= closures[from + w];
+                    }
+                }
+            }
+        }
+
+        startSet = Arrays.copyOf(closures, words);
+        acceptingSet = new long[words];
+        for (int s = 0; s < states.length; s++) {
+            if (states[s].isAccepting()) {
+                acceptingSet[s >>> 6] |= 1L << s;
+            }
+        }
+        current = newStateSet();
+        next = newStateSet();
+    }
+
+    /**
+     * @return The number of states.
+     */
+    public int getStateCount() {
+        return states.length;
+    }
+
+    /**
+     * @return The number of input symbols.
+     */
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * @param symbol The id of a symbol.
+     * @return The symbol.
+     */
+    public String getSymbol(int symbol) {
+        return symbols[symbol];
+    }
+
+    /**
+     * @param c A character of an input.
+     * @return The id of the symbol for the character, or -1 if no transition
+     *         reads it.
+     */
+    public int symbolOf(char c) {
+        if (c < ASCII) {
+            return asciiSymbols[c];
+        }
+        int index = Arrays.binarySearch(otherChars, c);
+        return index < 0 ? -1 : otherSymbols[index];
+    }
+
+    /**
+     * @return An empty set of states, of the size the other methods expect.
+     */
+    public long[] newStateSet() {
+        return new long[words];
+    }
+
+    /**
+     * Set a set of states to those the automaton starts in.
+     *
+     * @param set The set to fill.
+     */
+    public void start(long[] set) {
+        System.arraycopy(startSet, 0, set, 0, words);
+    }
+
+    /**
+     * Read a symbol in every state of a set.
+     *
+     * @param from   The states before the symbol.
+     * @param symbol The id of the symbol.
+     * @param to     The set to fill with the states after it, not from itself.
+     * @return true if any state is left.
+     */
+    public boolean step(long[] from, int symbol, long[] to) {
+        Arrays.fill(to, 0L);
+        long any = 0;
+        int base = symbol * states.length;
+        for (int w = 0; w < words; w++) {
+            long bits = from[w];
+            while (bits != 0) {
+                int row = (base + (w << 6) + Long.numberOfTrailingZeros(bits)) * words;
+                for (int i = 0; i < words; i++) {
+                    to[i] |= moves[row + i];
+                    any |= moves[row + i];
+                }
+                bits &= bits - 1;
+            }
+        }
+        return any != 0;
+    }
+
+    /**
+     * @param set A set of states.
+     * @return true if any state of the set accepts.
+     */
+    public boolean isAccepting(long[] set) {
+        for (int w = 0; w < words; w++) {
+            if ((set[w] & acceptingSet[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine whether the automaton accepts the given input, using the sets
+     * kept in this object.
+     *
+     * @param input The input to be checked.
+     * @return true if the automaton accepts the input.
+     */
+    public boolean accepts(CharSequence input) {
+        return accepts(input, current, next);
+    }
+
+    /**
+     * Determine whether the automaton accepts the given input, working in the
+     * given sets.
+     *
+     * @param input   The input to be checked.
+     * @param current A set from newStateSet().
+     * @param next    Another set from newStateSet().
+     * @return true if the automaton accepts the input.
+     */
+    public boolean accepts(CharSequence input, long[] current, long[] next) {
+        start(current);
+        for (int i = 0; i < input.length(); i++) {
+            int symbol = symbolOf(input.charAt(i));
+            if (symbol < 0 || !step(current, symbol, next)) {
+                return false;
+            }
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+        return isAccepting(current);
+    }
+}
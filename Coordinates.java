@@ -0,0 +1,50 @@
+/**
+ * Pack a row and column into a single long, so that hot code can pass and
+ * store locations without a Location object for each one. The row is kept in
+ * the high 32 bits and the column in the low 32 bits, so every pair of int
+ * coordinates has its own value, however large the grid.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class Coordinates {
+    /**
+     * Pack a row and column into one value.
+     *
+     * @param row The row.
+     * @param col The column.
+     * @return The packed coordinates.
+     */
+    public static long pack(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param coordinates Packed coordinates.
+     * @return The row.
+     */
+    public static int row(long coordinates) {
+        return (int) (coordinates >> 32);
+    }
+
+    /**
+     * @param coordinates Packed coordinates.
+     * @return The column.
+     */
+    public static int col(long coordinates) {
+        return (int) coordinates;
+    }
+
+    /**
+     * Return a hash code for the given coordinates. Nearby locations get well
+     * spread hash codes, and the column does not overflow into the row as it
+     * would with a plain shift.
+     *
+     * @param coordinates Packed coordinates.
+     * @return A hash code for the coordinates.
+     */
+    public static int hash(long coordinates) {
+        long mixed = coordinates * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -1,6 +1,3 @@
-import java.util.Random;
-import java.util.List;
-
 /**
  * class representing the concept of disease in cells. Diseases in
  * cells have two primary characteristics: (i) they can spread from one cell to
@@ -11,29 +8,156 @@ import java.util.List;
  */
 public class Disease {
     private boolean isDiseased;
-    private static final double CELL_DISEASE_PROB = 0.007;
+    private boolean wasDiseased; // The state at the start of the generation it last changed in.
+    private int changedAt = -1; // Swap count of the field when the state last changed.
+    private int caughtAt = -1; // Swap count when caught from a neighbour, -1 if not.
+    private final Field field; // Tells which generation is being computed.
+    static final double CELL_DISEASE_PROB = 0.007;
+    private static final double LOG_HEALTHY = Math.log(1 - CELL_DISEASE_PROB); // For infectionMask().
+    private static final double SEGMENT_HEALTHY = Math.pow(1 - CELL_DISEASE_PROB, 64); // No cell of 64 catches it.
 
-    public Disease() {
+    /**
+     * Create a disease state for a cell in the given field.
+     * 
+     * @param field The field the cell lives in.
+     */
+    public Disease(Field field) {
         this.isDiseased = false;
+        this.field = field;
     }
     
     public boolean isDiseased() {
+        catchPending();
         return isDiseased;
     }
     
     public void setDiseased(boolean isDiseased) {
+        catchPending();
+        if (changedAt != field.getSwapCount()) {
+            wasDiseased = this.isDiseased;
+            changedAt = field.getSwapCount();
+        }
         this.isDiseased = isDiseased;
     }
 
-    public void infectCell(boolean diseasable) {
-        if (diseasable) {
-            Random rand = Randomizer.getRandom();
-            if (rand.nextDouble() <= CELL_DISEASE_PROB) {
-                isDiseased = true;
-            }
+    /**
+     * Set whether the cell is diseased between generations, with nothing caught
+     * or changed in the current one, as when resuming from a checkpoint.
+     * 
+     * @param isDiseased Whether the cell is diseased.
+     */
+    public void restore(boolean isDiseased) {
+        this.isDiseased = isDiseased;
+        changedAt = -1;
+        caughtAt = -1;
+    }
+
+    /**
+     * Return whether the cell was diseased at the start of the generation being
+     * computed, ignoring changes the cell made to itself since.
+     * 
+     * @return true if the cell was diseased.
+     */
+    public boolean wasDiseased() {
+        catchPending();
+        return changedAt == field.getSwapCount() ? wasDiseased : isDiseased;
+    }
+
+    /**
+     * Return whether the cell will be diseased at the start of the next
+     * generation, counting a disease caught from a neighbour in this one.
+     * 
+     * @return true if the cell will be diseased.
+     */
+    public boolean willBeDiseased() {
+        catchPending();
+        return isDiseased || caughtAt == field.getSwapCount();
+    }
+
+    /**
+     * Catch the disease from a neighbour. The cell becomes diseased at the start
+     * of the next generation, so it does not matter whether it has already acted
+     * in this one.
+     */
+    public void catchDisease() {
+        if (caughtAt < 0) {
+            caughtAt = field.getSwapCount();
         }
     }
 
+    /**
+     * Become diseased if the disease was caught in an earlier generation.
+     */
+    private void catchPending() {
+        if (caughtAt >= 0 && caughtAt < field.getSwapCount()) {
+            isDiseased = true;
+            caughtAt = -1;
+        }
+    }
+
+    /**
+     * Catch the disease by chance, if the cell can be diseased.
+     * 
+     * @param diseasable  Whether the cell can be diseased.
+     * @param coordinates The packed coordinates of the cell, see Coordinates.
+     */
+    public void infectCell(boolean diseasable, long coordinates) {
+        if (diseasable && catchesByChance(field.getSwapCount(), coordinates)) {
+            setDiseased(true);
+        }
+    }
+
+    /**
+     * Return whether a cell catches the disease by chance in a generation. The
+     * engines use infectionMask() too, so they infect the same cells as Cell
+     * objects, whatever order they visit them in.
+     * 
+     * @param generation  The generation being computed, the field's swap count.
+     * @param coordinates The packed coordinates of the cell, see Coordinates.
+     * @return true if the cell catches the disease.
+     */
+    static boolean catchesByChance(long generation, long coordinates) {
+        int col = Coordinates.col(coordinates);
+        return (infectionMask(generation, Coordinates.row(coordinates), col >> 6) >>> (col & 63) & 1) != 0;
+    }
+
+    /**
+     * Return which cells of a row catch the disease by chance in a generation,
+     * 64 columns at a time. Rather than drawing a number for every cell, the
+     * number of cells passed over before the next one that catches it is drawn
+     * from the geometric distribution, so each cell still catches it with
+     * CELL_DISEASE_PROB but a segment takes one or two draws. Whether a cell
+     * can catch it at all is up to the caller.
+     * 
+     * @param generation The generation being computed, the field's swap count.
+     * @param row        The row.
+     * @param segment    The column divided by 64, rounded down.
+     * @return A mask with bit (column mod 64) set for each cell that catches it.
+     */
+    static long infectionMask(long generation, int row, int segment) {
+        long coordinates = Coordinates.pack(row, segment);
+        long mask = 0;
+        int draw = 0;
+        long col = gap(generation, coordinates, draw++);
+        while (col < 64) {
+            mask |= 1L << col;
+            col += 1 + gap(generation, coordinates, draw++);
+        }
+        return mask;
+    }
+
+    /**
+     * @return The number of cells to pass over before the next that catches the
+     *         disease, at most 64.
+     */
+    private static long gap(long generation, long coordinates, int draw) {
+        double chance = Randomizer.uniform(generation, coordinates, Randomizer.INFECTION, draw);
+        if (1 - chance <= SEGMENT_HEALTHY) {
+            return 64; // The usual case, without the logarithm.
+        }
+        return (long) Math.min(Math.log(1 - chance) / LOG_HEALTHY, 64);
+    }
+
     /**
      * Spreads the disease to adjacent cells based on a random chance.
      * 
@@ -42,17 +166,28 @@ public class Disease {
      *                        field.
      */
     public void spreadDisease(Field field, Location currentLocation) {
-        List<Location> adjacentLocations = field.adjacentLocations(currentLocation); // Get neighboring locations
+        spreadDisease(field, currentLocation.getRow(), currentLocation.getCol());
+    }
 
+    /**
+     * Spreads the disease to adjacent cells based on a random chance. Only
+     * cells alive at the start of the generation can catch it.
+     * 
+     * @param field The field where the cell is located.
+     * @param row   The row of the diseased cell.
+     * @param col   The column of the diseased cell.
+     */
+    public void spreadDisease(Field field, int row, int col) {
         // Iterate through each adjacent location
-        for (Location loc : adjacentLocations) {
-            Cell neighbor = field.getObjectAt(loc); // Get the neighboring cell
-            if (neighbor != null && !neighbor.getDiseased()) {
-                Random rand = Randomizer.getRandom();
-                double infectionChance = rand.nextDouble();
+        for (int i = 0; i < Field.NEIGHBOURS; i++) {
+            Cell neighbor = field.getNeighbour(row, col, i); // Get the neighboring cell
+            if (neighbor != null && field.isAliveAt(neighbor.getRow(), neighbor.getCol()) && !neighbor.wasDiseased()) {
+                int place = i < Field.NEIGHBOURS / 2 ? i : i + 1; // Skip the cell itself.
+                double infectionChance = Randomizer.uniform(field.getSwapCount(), Coordinates.pack(row, col),
+                        Randomizer.SPREAD + place);
                 // Spread the disease to the neighbor based on the infection chance
                 if (infectionChance <= CELL_DISEASE_PROB) {
-                    neighbor.setDiseased(true);
+                    neighbor.catchDisease();
                 }
             }
         }
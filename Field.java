@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -7,18 +8,35 @@ import java.util.Random;
  * Represent a rectangular grid of field positions. Each position stores a
  * single cell
  *
+ * Whether each cell is alive is kept in two planes, one for the current
+ * generation and one for the next. Cells read their neighbours from the current
+ * plane and write their own next state to the other, and swapGenerations()
+ * exchanges the two at the end of a generation. So no cell sees a change made
+ * by another in the same generation, whatever order they act in.
+ *
  * @author David J. Barnes, Michael Kölling & Jeffery Raphael & Jiangjing, Xu &
  *         Hongyuan, Zhao
  * @version 2024.02.28
  */
 
 public class Field {
+    public static final int NEIGHBOURS = 8; // Number of locations around each location.
+    // Row and column offsets of the neighbours, in row by row order.
+    private static final int[] NEIGHBOUR_ROWS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final int[] NEIGHBOUR_COLS = { -1, 0, 1, -1, 1, -1, 0, 1 };
     private static final Random rand = Randomizer.getRandom();
     private int depth, width;
-    private Cell[][] field;
+    private Cell[][] field; // Allocated when the first cell is placed.
+    private boolean[] alive; // Whether each location holds a living cell, row by row.
+    private boolean[] nextAlive; // Whether each location will hold a living cell next generation.
+    private byte[] species; // The species id of each location's cell, see Species.
+    private int swaps; // Number of times the planes have been swapped.
     private Temperature temperature; // The temperature within the simulation
     private int generation; // Tracks the number of generations the simulation has run.
-    private double diseaseAliveCells; // Counts the number of alive cells infected with disease.
+    private int[] living = new int[Species.COUNT]; // Living cells of each species, counted in the alive plane.
+    private int[] nextLiving = new int[Species.COUNT]; // The same for the nextAlive plane.
+    private int[] diseasedAlive = new int[Species.COUNT]; // Alive and diseased cells of each species.
+    private int[] nextDiseasedAlive = new int[Species.COUNT]; // The same for the next generation.
 
     /**
      * Represent a field of the given dimensions.
@@ -30,9 +48,7 @@ public class Field {
         this.depth = depth;
         this.width = width;
         this.generation = 0;
-        this.diseaseAliveCells = 0;
         this.temperature = new Temperature();
-        field = new Cell[depth][width];
     }
 
     /**
@@ -43,6 +59,17 @@ public class Field {
         this.temperature.update();
     }
 
+    /**
+     * Increase the number of generations by many at once and advance the
+     * temperature to match, without stepping through each generation.
+     *
+     * @param generations The number of generations, not negative.
+     */
+    public void increaseGen(int generations) {
+        generation += generations;
+        this.temperature.advance(generations);
+    }
+
     /**
      * Whether it is daytime currently
      * 
@@ -56,11 +83,21 @@ public class Field {
      * Empty the field.
      */
     public void clear() {
+        if (field == null) {
+            return;
+        }
         for (int row = 0; row < depth; row++) {
             for (int col = 0; col < width; col++) {
                 field[row][col] = null;
             }
         }
+        Arrays.fill(alive, false);
+        Arrays.fill(nextAlive, false);
+        Arrays.fill(species, (byte) Species.NONE);
+        Arrays.fill(living, 0);
+        Arrays.fill(nextLiving, 0);
+        Arrays.fill(diseasedAlive, 0);
+        Arrays.fill(nextDiseasedAlive, 0);
     }
 
     /**
@@ -69,7 +106,13 @@ public class Field {
      * @param location The location to clear.
      */
     public void clear(Location location) {
-        field[location.getRow()][location.getCol()] = null;
+        if (field != null) {
+            int index = location.getRow() * width + location.getCol();
+            field[location.getRow()][location.getCol()] = null;
+            setAlive(location.getRow(), location.getCol(), false);
+            setNextAlive(location.getRow(), location.getCol(), false);
+            species[index] = Species.NONE;
+        }
     }
 
     /**
@@ -81,7 +124,25 @@ public class Field {
      * @param col  Column coordinate of the location.
      */
     public void place(Cell cell, int row, int col) {
-        place(cell, new Location(row, col));
+        if (field == null) {
+            field = new Cell[depth][width];
+            alive = new boolean[depth * width];
+            nextAlive = new boolean[depth * width];
+            species = new byte[depth * width];
+        }
+        field[row][col] = cell;
+        // Move the location's place in the counts over to the new cell's species.
+        int index = row * width + col;
+        int kind = Species.of(cell);
+        if (alive[index]) {
+            living[species[index]]--;
+            living[kind]++;
+        }
+        if (nextAlive[index]) {
+            nextLiving[species[index]]--;
+            nextLiving[kind]++;
+        }
+        species[index] = (byte) kind;
     }
 
     /**
@@ -92,7 +153,7 @@ public class Field {
      * @param location Where to place the cell.
      */
     public void place(Cell cell, Location location) {
-        field[location.getRow()][location.getCol()] = cell;
+        place(cell, location.getRow(), location.getCol());
     }
 
     /**
@@ -113,25 +174,191 @@ public class Field {
      * @return The cell at the given location, or null if there is none.
      */
     public Cell getObjectAt(int row, int col) {
+        if (field == null) {
+            return null;
+        }
         return field[row][col];
     }
 
     /**
-     * Generate a random location that is adjacent to the given location, or is the
-     * same location. The returned location will be within the valid bounds of the
-     * field.
+     * Return whether the cell at the given location was alive at the start of
+     * the current generation.
+     * 
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return true if there is a living cell there.
+     */
+    public boolean isAliveAt(int row, int col) {
+        return alive != null && alive[row * width + col];
+    }
+
+    /**
+     * Set whether the cell at the given location is alive now, for setting up
+     * the field rather than for stepping it.
+     * 
+     * @param row   Row coordinate of the location.
+     * @param col   Column coordinate of the location.
+     * @param value Whether the cell is alive.
+     */
+    public void setAlive(int row, int col, boolean value) {
+        int index = row * width + col;
+        if (alive[index] != value) {
+            alive[index] = value;
+            living[species[index]] += value ? 1 : -1;
+        }
+    }
+
+    /**
+     * Set whether the cell at the given location will be alive in the next
+     * generation.
+     * 
+     * @param row   Row coordinate of the location.
+     * @param col   Column coordinate of the location.
+     * @param value Whether the cell will be alive.
+     */
+    public void setNextAlive(int row, int col, boolean value) {
+        int index = row * width + col;
+        if (nextAlive[index] != value) {
+            nextAlive[index] = value;
+            nextLiving[species[index]] += value ? 1 : -1;
+        }
+    }
+
+    /**
+     * Make the next generation the current one. Every cell must have set its
+     * next state since the last swap.
+     */
+    public void swapGenerations() {
+        if (alive != null) {
+            boolean[] swap = alive;
+            alive = nextAlive;
+            nextAlive = swap;
+        }
+        int[] swapLiving = living;
+        living = nextLiving;
+        nextLiving = swapLiving;
+        int[] swapCounts = diseasedAlive;
+        diseasedAlive = nextDiseasedAlive;
+        nextDiseasedAlive = swapCounts;
+        Arrays.fill(nextDiseasedAlive, 0);
+        swaps++;
+    }
+
+    /**
+     * Return whether the cell at the given location will be alive in the next
+     * generation, as far as it has been decided.
+     * 
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return true if the cell will be alive.
+     */
+    public boolean isNextAliveAt(int row, int col) {
+        return nextAlive != null && nextAlive[row * width + col];
+    }
+
+    /**
+     * Count a cell in or out of the alive and diseased cells of the next
+     * generation. Cells call this as their next state changes.
+     * 
+     * @param species The species id of the cell, see Species.
+     * @param change  1 to count the cell in, -1 to count it out.
+     */
+    public void countNextDiseasedAlive(int species, int change) {
+        nextDiseasedAlive[species] += change;
+    }
+
+    /**
+     * @return The number of times swapGenerations() has been called, which
+     *         identifies the generation being computed.
+     */
+    public int getSwapCount() {
+        return swaps;
+    }
+
+    /**
+     * Generate a random location that is adjacent to the given location. The
+     * returned location will be within the valid bounds of the field.
      * 
      * @param location The location from which to generate an adjacency.
-     * @return A valid location within the grid area.
+     * @return A valid location within the grid area, or null if the grid has
+     *         only one location.
      */
     public Location randomAdjacentLocation(Location location) {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        if (depth * width < 2) {
+            return null;
+        }
+        int row = location.getRow();
+        int col = location.getCol();
+        int i;
+        do {
+            i = rand.nextInt(NEIGHBOURS);
+        } while (!isInside(row + NEIGHBOUR_ROWS[i], col + NEIGHBOUR_COLS[i]));
+        return new Location(row + NEIGHBOUR_ROWS[i], col + NEIGHBOUR_COLS[i]);
+    }
+
+    /**
+     * Return the cell in one of the locations around the given one. The
+     * neighbours are numbered from 0 to NEIGHBOURS - 1 in row by row order, so
+     * a caller can visit them all with a plain loop and no allocation.
+     * 
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     * @param i   Which neighbour, from 0 to NEIGHBOURS - 1.
+     * @return The cell, or null if there is none or the neighbour is off the
+     *         grid.
+     */
+    public Cell getNeighbour(int row, int col, int i) {
+        int nextRow = row + NEIGHBOUR_ROWS[i];
+        int nextCol = col + NEIGHBOUR_COLS[i];
+        if (!isInside(nextRow, nextCol)) {
+            return null;
+        }
+        return getObjectAt(nextRow, nextCol);
+    }
+
+    /**
+     * Count the living cells around the given location, for rules that only need
+     * the number of living neighbours.
+     * 
+     * @param location Count the neighbours of this location.
+     * @return The number of living neighbours.
+     */
+    public int countLivingNeighbours(Location location) {
+        return countLivingNeighbours(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Count the living cells around the given location, for rules that only need
+     * the number of living neighbours.
+     * 
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     * @return The number of living neighbours.
+     */
+    public int countLivingNeighbours(int row, int col) {
+        int count = 0;
+        for (int i = 0; i < NEIGHBOURS; i++) {
+            int nextRow = row + NEIGHBOUR_ROWS[i];
+            int nextCol = col + NEIGHBOUR_COLS[i];
+            if (isInside(nextRow, nextCol) && isAliveAt(nextRow, nextCol)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the given coordinates lie within the grid.
+     */
+    private boolean isInside(int row, int col) {
+        return row >= 0 && row < depth && col >= 0 && col < width;
     }
 
     /**
      * Return a shuffled list of locations adjacent to the given one. The list will
      * not include the location itself. All locations will lie within the grid.
+     * This allocates a new list and locations on every call; use getNeighbour()
+     * or countLivingNeighbours() where the order does not matter.
      * 
      * @param location The location from which to generate adjacencies.
      * @return A list of locations adjacent to that given.
@@ -164,7 +391,8 @@ public class Field {
     }
 
     /**
-     * Get a shuffled list of living neighbours
+     * Get a shuffled list of living neighbours. Rules that only need the number of
+     * living neighbours should use countLivingNeighbours() instead.
      * 
      * @param location Get locations adjacent to this.
      * @return A list of living neighbours
@@ -178,11 +406,10 @@ public class Field {
             List<Location> adjLocations = adjacentLocations(location);
 
             for (Location loc : adjLocations) {
-                Cell cell = field[loc.getRow()][loc.getCol()];
-                if (cell != null && cell.isAlive())
+                Cell cell = getObjectAt(loc.getRow(), loc.getCol());
+                if (cell != null && isAliveAt(loc.getRow(), loc.getCol()))
                     neighbours.add(cell);
             }
-            Collections.shuffle(neighbours, rand);
         }
         return neighbours;
     }
@@ -213,8 +440,19 @@ public class Field {
      * @return true if the locations are adjacent, false otherwise.
      */
     public static boolean areNeighbours(Location loc1, Location loc2) {
-        int rowDiff = Math.abs(loc1.getRow() - loc2.getRow());
-        int colDiff = Math.abs(loc1.getCol() - loc2.getCol());
+        return areNeighbours(loc1.pack(), loc2.pack());
+    }
+
+    /**
+     * Determine whether two locations, given as packed coordinates, are adjacent.
+     * 
+     * @param coordinates1 The first location, see Coordinates.
+     * @param coordinates2 The second location.
+     * @return true if the locations are adjacent, false otherwise.
+     */
+    public static boolean areNeighbours(long coordinates1, long coordinates2) {
+        long rowDiff = Math.abs((long) Coordinates.row(coordinates1) - Coordinates.row(coordinates2));
+        long colDiff = Math.abs((long) Coordinates.col(coordinates1) - Coordinates.col(coordinates2));
 
         // Neighbours if the difference in rows and columns is 1 or less,
         // and not the same location
@@ -243,28 +481,90 @@ public class Field {
     }
 
     /**
-     * Count the number of diseased cells in the field.
+     * @return The temperature within the simulation.
+     */
+    public Temperature getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * @return The number of generations the simulation has run.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Carry on from a checkpoint: set the generation, the number of swaps and
+     * the temperature, and count the diseased living cells placed since the
+     * field was cleared.
      * 
-     * @return The number of diseased cells.
+     * @param generation  The number of generations the simulation had run.
+     * @param swaps       The number of times the planes had been swapped.
+     * @param temperature The temperature at the time.
      */
-    public double getDiseasedAliveCells() {
+    public void restore(int generation, int swaps, Temperature temperature) {
+        this.generation = generation;
+        this.swaps = swaps;
+        this.temperature = temperature;
+        Arrays.fill(diseasedAlive, 0);
+        Arrays.fill(nextDiseasedAlive, 0);
+        if (field == null) {
+            return;
+        }
         for (int row = 0; row < depth; row++) {
             for (int col = 0; col < width; col++) {
-                Cell cell = getObjectAt(row, col);
-                if (cell != null && cell.getDiseased() && cell.isAlive()) {
-                    diseaseAliveCells++;
+                Cell cell = field[row][col];
+                if (cell != null && alive[row * width + col] && cell.getDiseased()) {
+                    diseasedAlive[species[row * width + col]]++;
                 }
             }
         }
-        return diseaseAliveCells;
     }
 
     /**
-     * Reset the generation,temperature and the number of diseaseAliveCells.
+     * Return the number of living cells of one species. The count follows every
+     * birth and death, so this does not look at the grid.
+     * 
+     * @param species The species id, see Species.
+     * @return The number of living cells of that species.
+     */
+    public int getLivingCells(int species) {
+        return living[species];
+    }
+
+    /**
+     * Return the number of cells that are both alive and diseased. The count is
+     * kept up to date as cells change, so this does not look at the grid.
+     * 
+     * @return The number of diseased cells.
+     */
+    public double getDiseasedAliveCells() {
+        int count = 0;
+        for (int species = 0; species < Species.COUNT; species++) {
+            count += diseasedAlive[species];
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of cells of one species that are both alive and
+     * diseased.
+     * 
+     * @param species The species id, see Species.
+     * @return The number of diseased cells of that species.
+     */
+    public int getDiseasedAliveCells(int species) {
+        return diseasedAlive[species];
+    }
+
+    /**
+     * Reset the generation,temperature and the number of diseased cells.
      */
     public void reset() {
         generation = 0;
         this.temperature = new Temperature();
-        diseaseAliveCells = 0;
+        Arrays.fill(diseasedAlive, 0);
+        Arrays.fill(nextDiseasedAlive, 0);
     }
 }
\ No newline at end of file
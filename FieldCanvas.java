@@ -1,20 +1,40 @@
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color; 
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
 
 /**
- * Provide a graphical view of the field. This is a custom node for the user interface. 
+ * Provide a graphical view of the field. This is a custom node for the user interface.
+ *
+ * The picture is kept in an int buffer with one ARGB value per pixel. Filling
+ * the buffer with fill() does not touch the scene, so it can be done on the
+ * simulation thread, and for large grids bands of rows are filled in
+ * parallel. paint() then copies to the canvas only the rectangles whose cells
+ * changed colour since the last frame, through a WritableImage.
  *
- * @author Jeffery Raphael 
+ * @author Jeffery Raphael
  * @version 2024.02.03
  */
 
 public class FieldCanvas extends Canvas {
     private static final int GRID_VIEW_SCALING_FACTOR = 6;
+    private static final int BAND_ROWS = 16; // Grid rows in each band whose changes are tracked together.
+    private static final int PARALLEL_CELLS = 1 << 16; // Grids with at least this many cells are filled in parallel.
     private int width, height;
     private int xScale, yScale;
     GraphicsContext gc;
-    
+
+    private int rows, cols; // Grid rows and columns that fit on the canvas.
+    private int[] pixels; // The picture, one ARGB value per pixel, row by row.
+    private int[] cellColors; // The colour each cell was last filled with.
+    private WritableImage image; // The picture as last copied to the canvas.
+    private int[] dirtyFrom, dirtyTo; // Columns of each band changed since the last paint, from inclusive, to exclusive.
+
     /**
     * Create a new FieldView component.
     */
@@ -24,23 +44,120 @@ public class FieldCanvas extends Canvas {
         this.height = height;
         this.width = width;
     }
-    
-    public void setScale(int gridHeight, int gridWidth) {
+
+    public synchronized void setScale(int gridHeight, int gridWidth) {
         xScale = width / gridWidth;
         yScale = height / gridHeight;
-    
+
         if (xScale < 1)
             xScale = GRID_VIEW_SCALING_FACTOR;
-    
+
         if (yScale < 1)
             yScale = GRID_VIEW_SCALING_FACTOR;
+
+        // Cells past the edge of the canvas are never seen, so are not kept.
+        cols = Math.max(1, Math.min(gridWidth, (int) getWidth() / xScale));
+        rows = Math.max(1, Math.min(gridHeight, (int) getHeight() / yScale));
+        pixels = new int[cols * xScale * rows * yScale];
+        cellColors = new int[rows * cols]; // Transparent, so the first fill changes every cell.
+        image = new WritableImage(cols * xScale, rows * yScale);
+        int bands = (rows + BAND_ROWS - 1) / BAND_ROWS;
+        dirtyFrom = new int[bands];
+        dirtyTo = new int[bands];
+        Arrays.fill(dirtyFrom, cols);
+    }
+
+    /**
+    * Work out the colour of every cell and draw the cells that changed into
+    * the buffer. Nothing is shown until paint() is called, which must be on
+    * the JavaFX thread; this need not be.
+    *
+    * @param colorAt Gives the ARGB colour of the cell at a row and column, see argb().
+    */
+    public synchronized void fill(IntBinaryOperator colorAt) {
+        IntStream bands = IntStream.range(0, dirtyFrom.length);
+        if (rows * cols >= PARALLEL_CELLS) {
+            bands = bands.parallel();
+        }
+        bands.forEach(band -> fillBand(band, colorAt));
     }
-  
+
+    /**
+    * Fill the cells of one band of rows, noting which columns changed.
+    */
+    private void fillBand(int band, IntBinaryOperator colorAt) {
+        int from = dirtyFrom[band];
+        int to = dirtyTo[band];
+        int rowEnd = Math.min(rows, (band + 1) * BAND_ROWS);
+        for (int row = band * BAND_ROWS; row < rowEnd; row++) {
+            for (int col = 0; col < cols; col++) {
+                int color = colorAt.applyAsInt(row, col);
+                if (color != cellColors[row * cols + col]) {
+                    cellColors[row * cols + col] = color;
+                    drawCell(row, col, color);
+                    from = Math.min(from, col);
+                    to = Math.max(to, col + 1);
+                }
+            }
+        }
+        dirtyFrom[band] = from;
+        dirtyTo[band] = to;
+    }
+
+    /**
+    * Draw one cell into the buffer, leaving a one pixel gap to its right and
+    * below it, as long as the cells are big enough for that.
+    */
+    private void drawCell(int row, int col, int color) {
+        int stride = cols * xScale;
+        int markWidth = xScale > 1 ? xScale - 1 : 1;
+        int markHeight = yScale > 1 ? yScale - 1 : 1;
+        int start = row * yScale * stride + col * xScale;
+        for (int y = 0; y < markHeight; y++) {
+            Arrays.fill(pixels, start + y * stride, start + y * stride + markWidth, color);
+        }
+    }
+
+    /**
+    * Show what was last filled in. Consecutive bands that changed are copied to
+    * the canvas as one rectangle, covering the columns that changed in any of
+    * them. Must be called on the JavaFX thread.
+    */
+    public synchronized void paint() {
+        int stride = cols * xScale;
+        for (int band = 0; band < dirtyFrom.length; band++) {
+            if (dirtyFrom[band] >= dirtyTo[band]) {
+                continue;
+            }
+            int first = band;
+            int from = dirtyFrom[band];
+            int to = dirtyTo[band];
+            while (band + 1 < dirtyFrom.length && dirtyFrom[band + 1] < dirtyTo[band + 1]) {
+                band++;
+                from = Math.min(from, dirtyFrom[band]);
+                to = Math.max(to, dirtyTo[band]);
+            }
+            int x = from * xScale;
+            int y = first * BAND_ROWS * yScale;
+            int w = (to - from) * xScale;
+            int h = (Math.min(rows, (band + 1) * BAND_ROWS) - first * BAND_ROWS) * yScale;
+            image.getPixelWriter().setPixels(x, y, w, h, PixelFormat.getIntArgbInstance(), pixels, y * stride + x,
+                    stride);
+            gc.clearRect(x, y, w, h);
+            gc.drawImage(image, x, y, w, h, x, y, w, h);
+        }
+        Arrays.fill(dirtyFrom, cols);
+        Arrays.fill(dirtyTo, 0);
+    }
+
     /**
-    * Paint a rectangle of the given color on the canvas
+    * Return a colour as one ARGB value, as fill() expects.
+    *
+    * @param color The colour.
+    * @return The alpha, red, green and blue components, 8 bits each.
     */
-    public void drawMark(int x, int y, Color color) {
-        gc.setFill(color);
-        gc.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+    public static int argb(Color color) {
+        return (int) Math.round(color.getOpacity() * 255) << 24 | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8 | (int) Math.round(color.getBlue() * 255);
     }
-}
\ No newline at end of file
+}
@@ -1,116 +1,115 @@
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * This class collects and provides some statistical data on the state
- * of a field. It is flexible: it will create and maintain a counter
- * for any class of object that is found within the field.
+ * of a field. The counts are not worked out here: the field and the engines
+ * keep the number of living cells of each species up to date as cells are
+ * born and die, and update() copies them into an array indexed by species
+ * id. So taking the statistics costs one step per species rather than one
+ * per location.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
 
 public class FieldStats {
-    private HashMap<Class, Counter> counters;
-    private boolean countsValid;
+    private final int[] counts; // Living cells of each species, see Species.
+    private int total; // Living cells of every species.
+    private String details; // The population details, built when next asked for.
 
     /**
-     * Construct a FieldStats object.  Set up a collection for counters for
-     * each type of cell that we might find
+     * Construct a FieldStats object with a count for each species.
      */
     public FieldStats() {
-        counters = new HashMap<>();
-        countsValid = true;
+        counts = new int[Species.COUNT];
+        details = "";
     }
 
     /**
-     * Get details of what is in the field.
-     * @return A string describing what is in the field.
+     * Take the current counts from the simulator, or from a replay.
+     * @param simulator The simulation to take the counts from.
      */
-    public String getPopulationDetails(Field field) {
-        StringBuffer buffer = new StringBuffer();
-        if (!countsValid) {
-            generateCounts(field);
-        }
-        for (Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            buffer.append(info.getName());
-            buffer.append(": ");
-            buffer.append(info.getCount());
-            buffer.append(' ');
-        }
-        return buffer.toString();
+    public void update(SimulationSource simulator) {
+        update(takeCounts(simulator));
     }
 
     /**
-     * Invalidate the current set of statistics; reset all
-     * counts to zero.
+     * Take counts read earlier with takeCounts(), perhaps on another thread.
+     * @param livingCounts The number of living cells of each species, indexed
+     *                     by species id.
      */
-    public void reset() {
-        countsValid = false;
-        for (Class key : counters.keySet()) {
-            Counter count = counters.get(key);
-            count.reset();
+    public void update(int[] livingCounts) {
+        int newTotal = 0;
+        for (int species = 1; species < Species.COUNT; species++) {
+            int count = livingCounts[species];
+            if (count != counts[species]) {
+                counts[species] = count;
+                details = null;
+            }
+            newTotal += count;
         }
+        total = newTotal;
     }
 
     /**
-     * Increment the count for one class of life
-     * @param cellClass The class of cell to increment.
+     * Read the current number of living cells of each species, so that the
+     * counts of one generation can be shown later.
+     * @param simulator The simulation to take the counts from.
+     * @return The counts, indexed by species id.
      */
-    public void incrementCount(Class cellClass) {
-        Counter count = counters.get(cellClass);
-
-        if (count == null) {
-            // We do not have a counter for this species yet. Create one.
-            count = new Counter(cellClass.getName());
-            counters.put(cellClass, count);
+    public static int[] takeCounts(SimulationSource simulator) {
+        int[] livingCounts = new int[Species.COUNT];
+        for (int species = 1; species < Species.COUNT; species++) {
+            livingCounts[species] = simulator.getLivingCount(species);
         }
-        count.increment();
+        return livingCounts;
     }
 
     /**
-     * Indicate that a cell count has been completed.
+     * Get details of what is in the field. The string is only rebuilt when a
+     * count has changed.
+     * @return A string describing what is in the field.
      */
-    public void countFinished() {
-        countsValid = true;
+    public String getPopulationDetails() {
+        if (details == null) {
+            StringBuilder builder = new StringBuilder();
+            for (int species = 1; species < Species.COUNT; species++) {
+                if (counts[species] > 0) {
+                    builder.append(Species.getName(species));
+                    builder.append(": ");
+                    builder.append(counts[species]);
+                    builder.append(' ');
+                }
+            }
+            details = builder.toString();
+        }
+        return details;
     }
 
     /**
-     * Determine whether the simulation is still viable.
-     * I.e., should it continue to run.
-     * @return true If there is more than one life form alive
+     * Return the count for one species.
+     * @param species The species id, see Species.
+     * @return The number of living cells of that species.
      */
-    public boolean isViable(Field field) {
-        int nonZero = 0;
-        if (!countsValid) {
-            generateCounts(field);
-        }
-        for (Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            if (info.getCount() > 0) {
-                nonZero++;
-            }
-        }
-
-        return nonZero >= 1;
+    public int getCount(int species) {
+        return counts[species];
     }
 
     /**
-     * Generate counts of the number of cells.
-     * These are not kept up to date.
-     * @param field The field to generate the stats for.
+     * Reset all counts to zero.
      */
-    private void generateCounts(Field field) {
-        reset();
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                Cell cell = field.getObjectAt(row, col);
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        details = "";
+    }
 
-                if (cell != null) {
-                    incrementCount(cell.getClass());
-                }
-            }
-        }
-        countsValid = true;
+    /**
+     * Determine whether the simulation is still viable.
+     * I.e., should it continue to run.
+     * @return true If there is at least one life form alive
+     */
+    public boolean isViable() {
+        return total > 0;
     }
-}
\ No newline at end of file
+}
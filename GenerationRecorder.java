@@ -0,0 +1,299 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Write a log of a run, one record per generation, that GenerationReplay can
+ * play back and seek in without running the simulation again. The log is only
+ * ever appended to.
+ *
+ * Most records are deltas: the locations where a cell was born, died, caught
+ * the disease or recovered since the previous record, and those whose species
+ * or colour changed. Every so many records a keyframe gives the whole state
+ * instead, as a delta from an empty grid, so a replay never has to go back
+ * further than the last keyframe. Locations are given as the gap from the
+ * previous one in the same list, written in as few bytes as the gap needs,
+ * and the whole record is then compressed. Each record also holds the
+ * generation, temperature, time, disease count and population shown beside
+ * the grid. Closing the log appends an index of the keyframes; a log that was
+ * never closed can still be replayed, as the reader then finds the keyframes
+ * by reading through the records.
+ *
+ * Only the locations of the window the Simulator displays are recorded.
+ * Engines keep no colours, so their cells are recorded in the colours
+ * Simulator.populate() gives each species.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class GenerationRecorder {
+    static final long MAGIC = 0x4C4946454C4F4721L; // "LIFELOG!"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8 + 4 * 4;
+    static final int RECORD_HEADER_SIZE = 1 + 4 * 3;
+    static final int TRAILER_SIZE = 8 * 2;
+    static final byte KEYFRAME = 1; // Kinds of record.
+    static final byte DELTA = 2;
+    static final byte INDEX = 3;
+
+    // Colours of the species in an engine, as Simulator.populate() chooses them.
+    private static final int[] ENGINE_COLORS = { 0, Colors.ORANGE, Colors.PURPLE, Colors.BLUE, Colors.YELLOW };
+
+    private final DataOutputStream out;
+    private final int depth, width;
+    private final int keyframeInterval; // Records from one keyframe to the next.
+    private long position; // Bytes written so far.
+    private int sinceKeyframe; // Records written since the last keyframe.
+    private int lastGeneration = -1;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[1024];
+
+    // The state as last recorded.
+    private final byte[] species;
+    private final byte[] alive;
+    private final byte[] diseased;
+    private final int[] colors;
+
+    // The lists of locations in the record being built.
+    private final Bytes births = new Bytes(), deaths = new Bytes(), infections = new Bytes(),
+            recoveries = new Bytes(), changes = new Bytes(), record = new Bytes();
+    private final Bytes keyframes = new Bytes(); // Generation and position of each keyframe.
+
+    /**
+     * Start a log, replacing the file if it exists.
+     *
+     * @param path             The file to write.
+     * @param depth            The depth of the grid recorded.
+     * @param width            The width of the grid recorded.
+     * @param keyframeInterval The number of generations between keyframes.
+     * @throws IOException if the file cannot be written.
+     */
+    public GenerationRecorder(Path path, int depth, int width, int keyframeInterval) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframes must be at least one generation apart");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.keyframeInterval = keyframeInterval;
+        species = new byte[depth * width];
+        alive = new byte[depth * width];
+        diseased = new byte[depth * width];
+        colors = new int[depth * width];
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        out.writeLong(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(depth);
+        out.writeInt(width);
+        out.writeInt(keyframeInterval);
+        position = HEADER_SIZE;
+    }
+
+    /**
+     * Record the current generation of the simulation. The first generation
+     * recorded and every keyframeInterval-th after it are keyframes.
+     *
+     * @param simulator The simulation, with a grid of the size recorded.
+     * @throws IOException           if the record cannot be written.
+     * @throws IllegalStateException if the generation is not after the one last
+     *                               recorded.
+     */
+    public void record(Simulator simulator) throws IOException {
+        int generation = simulator.getGeneration();
+        if (generation <= lastGeneration) {
+            throw new IllegalStateException("Generation " + generation + " was recorded after " + lastGeneration);
+        }
+        boolean keyframe = lastGeneration < 0 || ++sinceKeyframe == keyframeInterval;
+        if (keyframe) {
+            // A keyframe is a delta from an empty grid.
+            Arrays.fill(species, (byte) 0);
+            Arrays.fill(alive, (byte) 0);
+            Arrays.fill(diseased, (byte) 0);
+            Arrays.fill(colors, 0);
+            sinceKeyframe = 0;
+        }
+        lastGeneration = generation;
+        compare(simulator);
+
+        record.clear();
+        record.writeString(simulator.getTemperature());
+        record.writeString(simulator.getTimeString());
+        record.writeLong(Double.doubleToLongBits(simulator.getDiseaseAliveCells()));
+        for (int id = 1; id < Species.COUNT; id++) {
+            record.writeVarint(simulator.getLivingCount(id));
+        }
+        for (Bytes list : new Bytes[] { births, deaths, infections, recoveries, changes }) {
+            record.writeVarint(list.count);
+            record.write(list);
+        }
+        writeRecord(keyframe ? KEYFRAME : DELTA, generation);
+    }
+
+    /**
+     * Compare every location with its state as last recorded, adding those that
+     * changed to the lists and noting their new state.
+     */
+    private void compare(Simulator simulator) {
+        for (Bytes list : new Bytes[] { births, deaths, infections, recoveries, changes }) {
+            list.clear();
+        }
+        Field field = simulator.getField();
+        LifeEngine engine = simulator.getEngine();
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                int index = row * width + col;
+                int id, color;
+                boolean isAlive, isDiseased;
+                if (engine != null) {
+                    id = engine.getSpecies(row, col);
+                    isAlive = engine.isAlive(row, col);
+                    isDiseased = engine.isDiseased(row, col);
+                    color = ENGINE_COLORS[id];
+                } else {
+                    Cell cell = field.getObjectAt(row, col);
+                    id = Species.of(cell);
+                    isAlive = field.isAliveAt(row, col);
+                    isDiseased = cell != null && cell.getDiseased();
+                    color = cell == null ? 0 : cell.getColor();
+                }
+                if (isAlive != (alive[index] != 0)) {
+                    (isAlive ? births : deaths).writeLocation(index);
+                    alive[index] = (byte) (isAlive ? 1 : 0);
+                }
+                if (isDiseased != (diseased[index] != 0)) {
+                    (isDiseased ? infections : recoveries).writeLocation(index);
+                    diseased[index] = (byte) (isDiseased ? 1 : 0);
+                }
+                if (id != species[index] || color != colors[index]) {
+                    changes.writeLocation(index);
+                    changes.writeVarint(id);
+                    changes.writeInt(color);
+                    species[index] = (byte) id;
+                    colors[index] = color;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compress the record built and append it to the log, noting where each
+     * keyframe starts.
+     */
+    private void writeRecord(byte kind, int generation) throws IOException {
+        deflater.reset();
+        deflater.setInput(record.bytes, 0, record.length);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        if (kind == KEYFRAME) {
+            keyframes.writeInt(generation);
+            keyframes.writeLong(position);
+            keyframes.count++;
+        }
+        out.writeByte(kind);
+        out.writeInt(generation);
+        out.writeInt(record.length);
+        out.writeInt(length);
+        out.write(compressed, 0, length);
+        position += RECORD_HEADER_SIZE + length;
+    }
+
+    /**
+     * Append the index of keyframes and close the file. The index gives the
+     * number of keyframes, the last generation recorded, and the generation and
+     * position of each keyframe; after it come its own position and MAGIC.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void close() throws IOException {
+        long indexPosition = position;
+        out.writeByte(INDEX);
+        out.writeInt(keyframes.count);
+        out.writeInt(lastGeneration);
+        out.write(keyframes.bytes, 0, keyframes.length);
+        out.writeLong(indexPosition);
+        out.writeLong(MAGIC);
+        out.close();
+        deflater.end();
+    }
+
+    /**
+     * A growable array of bytes, with ints written high byte first as
+     * DataOutputStream does, and a count of the entries in it.
+     */
+    private static class Bytes {
+        byte[] bytes = new byte[256];
+        int length;
+        int count; // Entries written, for the lists of locations.
+        private int last = -1; // Last location written.
+
+        void clear() {
+            length = 0;
+            count = 0;
+            last = -1;
+        }
+
+        void write(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = (byte) b;
+        }
+
+        void write(Bytes other) {
+            for (int i = 0; i < other.length; i++) {
+                write(other.bytes[i]);
+            }
+        }
+
+        /**
+         * Write an unsigned value seven bits at a time, low bits first, with
+         * the top bit of each byte set if more follow.
+         */
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        /**
+         * Write a location after the last one written, as the gap between them.
+         */
+        void writeLocation(int index) {
+            writeVarint(index - last - 1);
+            last = index;
+            count++;
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            for (byte b : utf8) {
+                write(b);
+            }
+        }
+    }
+}
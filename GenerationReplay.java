@@ -0,0 +1,412 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Play back a log written by GenerationRecorder. The replay holds the state of
+ * one generation at a time and moves on a generation by applying the next
+ * delta, so it can be shown in a SimulatorView in place of a running
+ * Simulator. seek() jumps to any generation by going back to the last
+ * keyframe at or before it and applying the deltas from there, which reads
+ * at most one keyframe interval of records.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class GenerationReplay implements SimulationSource, Closeable {
+    private final FileChannel channel;
+    private final int depth, width;
+    private int[] keyGenerations = new int[16]; // Generation of each keyframe, in order.
+    private long[] keyPositions = new long[16]; // Where each keyframe starts in the file.
+    private int keyframes; // Number of keyframes.
+    private int firstGeneration, lastGeneration;
+    private long recordsEnd; // Where the records stop.
+    private long nextPosition; // Where the record after the current one starts.
+    private final Inflater inflater = new Inflater();
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(GenerationRecorder.RECORD_HEADER_SIZE);
+    private ByteBuffer compressed = ByteBuffer.allocate(1024);
+    private byte[] raw = new byte[1024];
+
+    // The current generation.
+    private int generation;
+    private String temperature, time;
+    private double diseaseAliveCells;
+    private final int[] living = new int[Species.COUNT];
+    private final byte[] species;
+    private final byte[] alive;
+    private final byte[] diseased;
+    private final int[] colors;
+
+    /**
+     * Open a log and go to the first generation in it.
+     *
+     * @param path The file to read.
+     * @throws IOException if the file cannot be read, is not a log or has no
+     *                     complete records.
+     */
+    public GenerationReplay(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, GenerationRecorder.HEADER_SIZE);
+            if (header.getLong() != GenerationRecorder.MAGIC) {
+                throw new IOException(path + " is not a generation log");
+            }
+            int version = header.getInt();
+            if (version != GenerationRecorder.VERSION) {
+                throw new IOException("Unsupported generation log version " + version);
+            }
+            depth = header.getInt();
+            width = header.getInt();
+            if (depth < 1 || width < 1 || (long) depth * width > Integer.MAX_VALUE) {
+                throw new IOException(path + " is corrupt");
+            }
+            species = new byte[depth * width];
+            alive = new byte[depth * width];
+            diseased = new byte[depth * width];
+            colors = new int[depth * width];
+            if (!readIndex()) {
+                scan();
+            }
+            if (keyframes == 0) {
+                throw new IOException(path + " holds no generations");
+            }
+            seek(firstGeneration);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the index of keyframes appended when the log was closed.
+     *
+     * @return false if there is no index, as the log was not closed.
+     */
+    private boolean readIndex() throws IOException {
+        long size = channel.size();
+        if (size < GenerationRecorder.HEADER_SIZE + GenerationRecorder.TRAILER_SIZE) {
+            return false;
+        }
+        ByteBuffer trailer = read(size - GenerationRecorder.TRAILER_SIZE, GenerationRecorder.TRAILER_SIZE);
+        long indexPosition = trailer.getLong();
+        if (trailer.getLong() != GenerationRecorder.MAGIC || indexPosition < GenerationRecorder.HEADER_SIZE
+                || indexPosition > size - GenerationRecorder.TRAILER_SIZE - 9) {
+            return false;
+        }
+        ByteBuffer start = read(indexPosition, 9);
+        int count = start.get() == GenerationRecorder.INDEX ? start.getInt() : -1;
+        lastGeneration = start.getInt();
+        if (count < 1 || indexPosition + 9 + count * 12L != size - GenerationRecorder.TRAILER_SIZE) {
+            return false;
+        }
+        ByteBuffer index = read(indexPosition + 9, count * 12);
+        for (int i = 0; i < count; i++) {
+            addKeyframe(index.getInt(), index.getLong());
+        }
+        firstGeneration = keyGenerations[0];
+        recordsEnd = indexPosition;
+        return true;
+    }
+
+    /**
+     * Find the keyframes by reading through the records, up to the end of the
+     * file or the first record that was not completely written.
+     */
+    private void scan() throws IOException {
+        long position = GenerationRecorder.HEADER_SIZE;
+        long size = channel.size();
+        while (position + GenerationRecorder.RECORD_HEADER_SIZE <= size) {
+            ByteBuffer header = read(position, GenerationRecorder.RECORD_HEADER_SIZE);
+            byte kind = header.get();
+            int recordGeneration = header.getInt();
+            header.getInt();
+            int length = header.getInt();
+            long end = position + GenerationRecorder.RECORD_HEADER_SIZE + length;
+            if ((kind != GenerationRecorder.KEYFRAME && kind != GenerationRecorder.DELTA) || length < 0
+                    || end > size) {
+                break;
+            }
+            if (kind == GenerationRecorder.KEYFRAME) {
+                addKeyframe(recordGeneration, position);
+            }
+            if (keyframes > 0) {
+                lastGeneration = recordGeneration;
+            }
+            position = end;
+        }
+        firstGeneration = keyframes > 0 ? keyGenerations[0] : 0;
+        recordsEnd = position;
+    }
+
+    private void addKeyframe(int keyGeneration, long position) {
+        if (keyframes == keyGenerations.length) {
+            keyGenerations = Arrays.copyOf(keyGenerations, keyframes * 2);
+            keyPositions = Arrays.copyOf(keyPositions, keyframes * 2);
+        }
+        keyGenerations[keyframes] = keyGeneration;
+        keyPositions[keyframes] = position;
+        keyframes++;
+    }
+
+    /**
+     * Go to the last generation recorded at or before the given one, or to the
+     * first generation recorded if it is before that.
+     *
+     * @param target The generation to go to.
+     * @throws IOException if the log cannot be read.
+     */
+    public void seek(int target) throws IOException {
+        // The last keyframe at or before the target.
+        int key = Arrays.binarySearch(keyGenerations, 0, keyframes, target);
+        if (key < 0) {
+            key = Math.max(0, -key - 2);
+        }
+        nextPosition = keyPositions[key];
+        applyNext();
+        while (nextPosition < recordsEnd && peekGeneration() <= target) {
+            applyNext();
+        }
+    }
+
+    /**
+     * Move on to the next generation recorded. At the end of the log this does
+     * nothing.
+     *
+     * @throws UncheckedIOException if the log cannot be read.
+     */
+    public void simOneGeneration() {
+        if (hasNext()) {
+            try {
+                applyNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return true if there are generations after the current one.
+     */
+    public boolean hasNext() {
+        return nextPosition < recordsEnd;
+    }
+
+    /**
+     * @return The generation of the next record.
+     */
+    private int peekGeneration() throws IOException {
+        ByteBuffer header = read(nextPosition, 5);
+        header.get();
+        return header.getInt();
+    }
+
+    /**
+     * Read the next record and apply it to the state.
+     */
+    private void applyNext() throws IOException {
+        recordHeader.clear();
+        readFully(recordHeader, nextPosition);
+        byte kind = recordHeader.get();
+        int recordGeneration = recordHeader.getInt();
+        int rawLength = recordHeader.getInt();
+        int length = recordHeader.getInt();
+        if (length < 0 || rawLength < 0) {
+            throw new IOException("Corrupt record at " + nextPosition);
+        }
+        if (compressed.capacity() < length) {
+            compressed = ByteBuffer.allocate(length);
+        }
+        if (raw.length < rawLength) {
+            raw = new byte[rawLength];
+        }
+        compressed.clear().limit(length);
+        readFully(compressed, nextPosition + GenerationRecorder.RECORD_HEADER_SIZE);
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, length);
+        try {
+            if (inflater.inflate(raw, 0, rawLength) != rawLength) {
+                throw new IOException("Corrupt record at " + nextPosition);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt record at " + nextPosition, e);
+        }
+
+        if (kind == GenerationRecorder.KEYFRAME) {
+            Arrays.fill(species, (byte) 0);
+            Arrays.fill(alive, (byte) 0);
+            Arrays.fill(diseased, (byte) 0);
+            Arrays.fill(colors, 0);
+        }
+        try {
+            apply(ByteBuffer.wrap(raw, 0, rawLength));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt record at " + nextPosition, e);
+        }
+        generation = recordGeneration;
+        nextPosition += GenerationRecorder.RECORD_HEADER_SIZE + length;
+    }
+
+    /**
+     * Apply the changes in a record, as written by GenerationRecorder.record().
+     */
+    private void apply(ByteBuffer in) {
+        temperature = readString(in);
+        time = readString(in);
+        diseaseAliveCells = Double.longBitsToDouble(in.getLong());
+        for (int id = 1; id < Species.COUNT; id++) {
+            living[id] = readVarint(in);
+        }
+        applyList(in, alive, (byte) 1);
+        applyList(in, alive, (byte) 0);
+        applyList(in, diseased, (byte) 1);
+        applyList(in, diseased, (byte) 0);
+        int count = readVarint(in);
+        int index = -1;
+        for (int i = 0; i < count; i++) {
+            index += readVarint(in) + 1;
+            int id = readVarint(in);
+            if (id >= Species.COUNT) {
+                throw new IndexOutOfBoundsException("Unknown species id " + id);
+            }
+            species[index] = (byte) id;
+            colors[index] = in.getInt();
+        }
+    }
+
+    /**
+     * Set the given value at every location in a list.
+     */
+    private static void applyList(ByteBuffer in, byte[] plane, byte value) {
+        int count = readVarint(in);
+        int index = -1;
+        for (int i = 0; i < count; i++) {
+            index += readVarint(in) + 1;
+            plane[index] = value;
+        }
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[readVarint(in)];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The given number of bytes from the given position in the file.
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(buffer, position);
+        return buffer;
+    }
+
+    /**
+     * Fill the buffer from the given position in the file and flip it.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Generation log ends at " + position);
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return The first generation in the log.
+     */
+    public int getFirstGeneration() {
+        return firstGeneration;
+    }
+
+    /**
+     * @return The last generation in the log.
+     */
+    public int getLastGeneration() {
+        return lastGeneration;
+    }
+
+    public String getTemperature() {
+        return temperature;
+    }
+
+    public String getTimeString() {
+        return time;
+    }
+
+    public double getDiseaseAliveCells() {
+        return diseaseAliveCells;
+    }
+
+    public int getLivingCount(int id) {
+        return living[id];
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return true if there is a living cell at the given location.
+     */
+    public boolean isAlive(int row, int col) {
+        return alive[row * width + col] != 0;
+    }
+
+    /**
+     * @return The species id at the given location, Species.NONE if empty.
+     */
+    public int getSpecies(int row, int col) {
+        return species[row * width + col];
+    }
+
+    /**
+     * @return true if the cell at the given location is diseased.
+     */
+    public boolean isDiseased(int row, int col) {
+        return diseased[row * width + col] != 0;
+    }
+
+    /**
+     * @return The colour of the cell at the given location, as an ARGB value.
+     */
+    public int getColor(int row, int col) {
+        return colors[row * width + col];
+    }
+}
@@ -0,0 +1,579 @@
+import java.util.Arrays;
+
+/**
+ * A HashLife engine for Mycoplasma patterns without disease. The grid is held
+ * as a quadtree in which identical squares share a single node, and the result
+ * of advancing each node is remembered, so repeating or slowly changing
+ * patterns can be advanced by 2^k generations in one call to jump().
+ *
+ * Disease is not simulated, and the pattern evolves on an unbounded plane:
+ * cells that leave the field keep evolving and may come back. All cells are
+ * taken to be as old as the run, so once the run passes the Mycoplasma
+ * maximum age every cell dies, as it would on the other engines.
+ *
+ * The table of nodes holds at most a fixed number of entries. When it is full,
+ * even in the middle of a jump, every node that is not part of the current
+ * pattern, of a square still being advanced or of the remembered result of one
+ * of those is evicted. Remembered results are kept for the nodes that stay.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class HashLifeEngine implements LifeEngine {
+    private static final int DEFAULT_MAX_NODES = 1 << 22;
+    private static final int MAX_LEVEL = 62;
+
+    private final int depth, width;
+    private final int maxNodes;
+    private Node[] table;
+    private int nodeCount;
+    private int collectAt; // The node count at which the table is next cleaned up.
+    private Node[] pinned = new Node[256]; // Squares being advanced, and their parts advanced so far.
+    private int pinnedCount;
+    private final Node[] empty = new Node[MAX_LEVEL + 1]; // The empty square of each level.
+    private Node root;
+    private long originRow, originCol; // Grid coordinates of the root's top left corner.
+    private long steps; // Generations advanced since the pattern was placed.
+
+    /**
+     * A square of 2^level by 2^level cells. Level 0 nodes are single cells.
+     */
+    private static final class Node {
+        final Node nw, ne, sw, se;
+        final int level;
+        final long population;
+        final int hash;
+        Node next; // The next node in the same bucket of the table.
+        Node result; // The centre advanced by 2^resultLog generations.
+        int resultLog = -1;
+        boolean marked;
+
+        Node(boolean alive) {
+            nw = ne = sw = se = null;
+            level = 0;
+            population = alive ? 1 : 0;
+            hash = alive ? 1 : 0;
+        }
+
+        Node(Node nw, Node ne, Node sw, Node se) {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            level = nw.level + 1;
+            population = nw.population + ne.population + sw.population + se.population;
+            hash = hash(nw, ne, sw, se);
+        }
+
+        static int hash(Node nw, Node ne, Node sw, Node se) {
+            int h = nw.level;
+            h = h * 31 + nw.hash;
+            h = h * 31 + ne.hash;
+            h = h * 31 + sw.hash;
+            h = h * 31 + se.hash;
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static final Node DEAD = new Node(false);
+    private static final Node ALIVE = new Node(true);
+
+    /**
+     * Create an empty engine for a field of the given dimensions.
+     *
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public HashLifeEngine(int depth, int width) {
+        this(depth, width, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Create an empty engine that keeps at most the given number of nodes.
+     *
+     * @param depth    The depth of the field.
+     * @param width    The width of the field.
+     * @param maxNodes The number of nodes at which the table is cleaned up.
+     */
+    public HashLifeEngine(int depth, int width, int maxNodes) {
+        this.depth = depth;
+        this.width = width;
+        this.maxNodes = maxNodes;
+        empty[0] = DEAD;
+        clear();
+    }
+
+    public void clear() {
+        table = new Node[1024];
+        nodeCount = 0;
+        collectAt = maxNodes;
+        pinnedCount = 0;
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            empty[level] = null;
+        }
+        int level = 3;
+        while ((1L << level) < Math.max(depth, width)) {
+            level++;
+        }
+        root = emptyNode(level);
+        originRow = 0;
+        originCol = 0;
+        steps = 0;
+    }
+
+    /**
+     * Place a Mycoplasma at the given location. Only living cells are stored.
+     *
+     * @throws IllegalArgumentException if the species is not Mycoplasma.
+     */
+    public void place(int row, int col, int species, boolean alive) {
+        if (species != Species.MYCOPLASMA) {
+            throw new IllegalArgumentException("HashLifeEngine only holds Mycoplasma");
+        }
+        if (nodeCount > collectAt) {
+            collect(); // Each placement leaves the nodes of the pattern before it behind.
+        }
+        while (!covers(row, col)) {
+            expand();
+        }
+        root = set(root, row - originRow, col - originCol, alive);
+    }
+
+    /**
+     * Place a Mycoplasma as it was when a checkpoint was taken. Every cell is as
+     * old as the pattern, so only that age can be restored. Empty locations are
+     * left empty.
+     *
+     * @throws IllegalArgumentException if the species is not Mycoplasma, the
+     *                                  cell is diseased or its age is not
+     *                                  getSteps().
+     */
+    public void restore(int row, int col, int species, boolean alive, int age, boolean diseased,
+            boolean automatonAlive) {
+        if (species == Species.NONE && !alive) {
+            return;
+        }
+        if (diseased || age != getSteps()) {
+            throw new IllegalArgumentException("HashLifeEngine cells are free of disease and as old as the pattern");
+        }
+        place(row, col, species, alive);
+    }
+
+    public int getSteps() {
+        return (int) Math.min(steps, Integer.MAX_VALUE);
+    }
+
+    public void setSteps(int steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Advance the pattern by one generation.
+     *
+     * @param environment Not used, as the pattern is free of disease.
+     */
+    public void step(Field environment) {
+        jump(0);
+    }
+
+    /**
+     * Advance the pattern by 2^log2 generations in one go.
+     *
+     * @param log2 The base 2 logarithm of the number of generations.
+     */
+    public void jump(int log2) {
+        if (log2 < 0 || log2 > MAX_LEVEL - 3) {
+            throw new IllegalArgumentException("Cannot jump 2^" + log2 + " generations");
+        }
+        if (nodeCount > collectAt) {
+            collect();
+        }
+        while (root.level < log2 + 2 || !isPadded(root)) {
+            expand();
+        }
+        expand();
+        long shift = 1L << (root.level - 2);
+        root = successor(root, log2);
+        originRow += shift;
+        originCol += shift;
+        steps += 1L << log2;
+        if (steps > Mycoplasma.MAX_AGE + 1) {
+            // Every cell is past its maximum age, see Cell.checkAge().
+            root = emptyNode(root.level);
+        }
+    }
+
+    /**
+     * Return the centre of a node of level 2 or more, advanced by 2^log2
+     * generations, where log2 is at most level - 2.
+     */
+    private Node successor(Node node, int log2) {
+        if (node.population == 0) {
+            return emptyNode(node.level - 1);
+        }
+        log2 = Math.min(log2, node.level - 2);
+        if (node.resultLog == log2) {
+            return node.result;
+        }
+        if (node.level == 2) {
+            node.result = life4x4(node);
+            node.resultLog = 0;
+            return node.result;
+        }
+        // Anything held in a local variable below must be pinned, as each call
+        // to successor() may clean up the table.
+        int unpinned = pinnedCount;
+        pin(node);
+        if (nodeCount > collectAt) {
+            collect();
+        }
+        Node nw = node.nw, ne = node.ne, sw = node.sw, se = node.se;
+        // The nine overlapping squares of half the size, advanced.
+        Node c1 = pin(successor(nw, log2));
+        Node c2 = pin(successor(join(nw.ne, ne.nw, nw.se, ne.sw), log2));
+        Node c3 = pin(successor(ne, log2));
+        Node c4 = pin(successor(join(nw.sw, nw.se, sw.nw, sw.ne), log2));
+        Node c5 = pin(successor(join(nw.se, ne.sw, sw.ne, se.nw), log2));
+        Node c6 = pin(successor(join(ne.sw, ne.se, se.nw, se.ne), log2));
+        Node c7 = pin(successor(sw, log2));
+        Node c8 = pin(successor(join(sw.ne, se.nw, sw.se, se.sw), log2));
+        Node c9 = pin(successor(se, log2));
+
+        Node result;
+        if (log2 < node.level - 2) {
+            // The squares have already been advanced far enough; take their centres.
+            result = join(join(c1.se, c2.sw, c4.ne, c5.nw), join(c2.se, c3.sw, c5.ne, c6.nw),
+                    join(c4.se, c5.sw, c7.ne, c8.nw), join(c5.se, c6.sw, c8.ne, c9.nw));
+        } else {
+            // Advance the four quarters formed from the nine squares a second time.
+            Node q1 = pin(successor(join(c1, c2, c4, c5), log2));
+            Node q2 = pin(successor(join(c2, c3, c5, c6), log2));
+            Node q3 = pin(successor(join(c4, c5, c7, c8), log2));
+            result = join(q1, q2, q3, successor(join(c5, c6, c8, c9), log2));
+        }
+        pinnedCount = unpinned;
+        node.result = result;
+        node.resultLog = log2;
+        return result;
+    }
+
+    /**
+     * Keep a node through any clean up until it is unpinned.
+     *
+     * @return The node.
+     */
+    private Node pin(Node node) {
+        if (pinnedCount == pinned.length) {
+            pinned = Arrays.copyOf(pinned, pinned.length * 2);
+        }
+        pinned[pinnedCount++] = node;
+        return node;
+    }
+
+    /**
+     * Advance the centre 2x2 of a 4x4 node by one generation with the
+     * Mycoplasma rule.
+     */
+    private Node life4x4(Node node) {
+        boolean[] cells = new boolean[16];
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                cells[row * 4 + col] = get(node, row, col);
+            }
+        }
+        Node[] centre = new Node[4];
+        for (int i = 0; i < 4; i++) {
+            int row = 1 + i / 2;
+            int col = 1 + i % 2;
+            int neighbours = 0;
+            for (int r = row - 1; r <= row + 1; r++) {
+                for (int c = col - 1; c <= col + 1; c++) {
+                    if ((r != row || c != col) && cells[r * 4 + c]) {
+                        neighbours++;
+                    }
+                }
+            }
+            centre[i] = Mycoplasma.nextState(cells[row * 4 + col], neighbours) ? ALIVE : DEAD;
+        }
+        return join(centre[0], centre[1], centre[2], centre[3]);
+    }
+
+    /**
+     * Return the canonical node with the given quadrants, creating it if needed.
+     */
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        int hash = Node.hash(nw, ne, sw, se);
+        int bucket = hash & (table.length - 1);
+        for (Node node = table[bucket]; node != null; node = node.next) {
+            if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+                return node;
+            }
+        }
+        Node node = new Node(nw, ne, sw, se);
+        node.next = table[bucket];
+        table[bucket] = node;
+        nodeCount++;
+        if (nodeCount > table.length) {
+            rehash(table.length * 2);
+        }
+        return node;
+    }
+
+    private void rehash(int size) {
+        Node[] old = table;
+        table = new Node[size];
+        for (Node head : old) {
+            for (Node node = head; node != null;) {
+                Node following = node.next;
+                int bucket = node.hash & (size - 1);
+                node.next = table[bucket];
+                table[bucket] = node;
+                node = following;
+            }
+        }
+    }
+
+    /**
+     * Evict every node that is not part of the current pattern, a pinned node
+     * or the result of one. Nodes that stay keep their results unless the
+     * result was evicted.
+     */
+    private void collect() {
+        mark(root, true);
+        for (int i = 0; i < pinnedCount; i++) {
+            mark(pinned[i], true);
+        }
+        for (Node node : empty) {
+            mark(node, false);
+        }
+        Node[] old = table;
+        for (Node head : old) {
+            for (Node node = head; node != null; node = node.next) {
+                if (node.result != null && !(node.marked && node.result.marked)) {
+                    node.result = null;
+                    node.resultLog = -1;
+                }
+            }
+        }
+        int size = table.length;
+        while (size > 1024 && size / 4 > maxNodes) {
+            size /= 2;
+        }
+        table = new Node[size];
+        nodeCount = 0;
+        for (Node head : old) {
+            for (Node node = head; node != null;) {
+                Node following = node.next;
+                if (node.marked) {
+                    node.marked = false;
+                    int bucket = node.hash & (size - 1);
+                    node.next = table[bucket];
+                    table[bucket] = node;
+                    nodeCount++;
+                } else {
+                    node.next = null;
+                }
+                node = following;
+            }
+        }
+        if (nodeCount > table.length) {
+            rehash(Integer.highestOneBit(nodeCount) * 2);
+        }
+        // A pattern that fills most of the table on its own would be cleaned up
+        // again at once, so leave it room to grow.
+        collectAt = Math.max(maxNodes, nodeCount * 2);
+    }
+
+    /**
+     * Mark a node and the nodes it is made of, and if asked the nodes of their
+     * results, but not the results of those.
+     */
+    private void mark(Node node, boolean results) {
+        if (node == null || node.level == 0 || node.marked) {
+            return;
+        }
+        node.marked = true;
+        mark(node.nw, results);
+        mark(node.ne, results);
+        mark(node.sw, results);
+        mark(node.se, results);
+        if (results) {
+            mark(node.result, false);
+        }
+    }
+
+    private Node emptyNode(int level) {
+        if (empty[level] == null) {
+            Node quarter = emptyNode(level - 1);
+            empty[level] = join(quarter, quarter, quarter, quarter);
+        }
+        return empty[level];
+    }
+
+    /**
+     * Surround the root with empty space, doubling its size about its centre.
+     */
+    private void expand() {
+        Node border = emptyNode(root.level - 1);
+        long shift = 1L << (root.level - 1);
+        root = join(join(border, border, border, root.nw), join(border, border, root.ne, border),
+                join(border, root.sw, border, border), join(root.se, border, border, border));
+        originRow -= shift;
+        originCol -= shift;
+    }
+
+    /**
+     * @return true if all living cells lie in the central quarter of the node.
+     */
+    private boolean isPadded(Node node) {
+        return node.level >= 3 && node.population == node.nw.se.population + node.ne.sw.population
+                + node.sw.ne.population + node.se.nw.population;
+    }
+
+    private boolean covers(long row, long col) {
+        long size = 1L << root.level;
+        return row >= originRow && row < originRow + size && col >= originCol && col < originCol + size;
+    }
+
+    /**
+     * Return a copy of the node with one cell changed.
+     */
+    private Node set(Node node, long row, long col, boolean alive) {
+        if (node.level == 0) {
+            return alive ? ALIVE : DEAD;
+        }
+        long half = 1L << (node.level - 1);
+        if (row < half) {
+            if (col < half) {
+                return join(set(node.nw, row, col, alive), node.ne, node.sw, node.se);
+            }
+            return join(node.nw, set(node.ne, row, col - half, alive), node.sw, node.se);
+        }
+        if (col < half) {
+            return join(node.nw, node.ne, set(node.sw, row - half, col, alive), node.se);
+        }
+        return join(node.nw, node.ne, node.sw, set(node.se, row - half, col - half, alive));
+    }
+
+    private static boolean get(Node node, long row, long col) {
+        while (node.level > 0) {
+            if (node.population == 0) {
+                return false;
+            }
+            long half = 1L << (node.level - 1);
+            if (row < half) {
+                node = col < half ? node.nw : node.ne;
+            } else {
+                node = col < half ? node.sw : node.se;
+                row -= half;
+            }
+            if (col >= half) {
+                col -= half;
+            }
+        }
+        return node.population != 0;
+    }
+
+    public boolean isAlive(int row, int col) {
+        return covers(row, col) && get(root, row - originRow, col - originCol);
+    }
+
+    public int getSpecies(int row, int col) {
+        return isAlive(row, col) ? Species.MYCOPLASMA : Species.NONE;
+    }
+
+    public boolean isDiseased(int row, int col) {
+        return false;
+    }
+
+    public int getAge(int row, int col) {
+        return getSteps(); // Every cell was placed before the first step.
+    }
+
+    public boolean isAutomatonAlive(int row, int col) {
+        return isAlive(row, col); // There are no NonDeterministicCells here; an automaton agrees with its cell.
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Return the number of living Mycoplasma, including any outside the field.
+     * Every node knows its population, so this is read off the root.
+     */
+    public int getLivingCount(int species) {
+        return species == Species.MYCOPLASMA ? (int) Math.min(root.population, Integer.MAX_VALUE) : 0;
+    }
+
+    public int getDiseasedAliveCount() {
+        return 0;
+    }
+
+    public int getDiseasedAliveCount(int species) {
+        return 0;
+    }
+
+    /**
+     * @return The number of living cells, including any outside the field.
+     */
+    public long getPopulation() {
+        return root.population;
+    }
+
+    /**
+     * Return the smallest rectangle holding every living cell, inside the
+     * field or not. Parts that lie beyond the range of an int are cut off.
+     *
+     * @return The top row, left column, bottom row and right column, the last
+     *         two exclusive, or null if no cell is alive.
+     */
+    public int[] getLivingBounds() {
+        if (root.population == 0) {
+            return null;
+        }
+        long[] bounds = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE };
+        extendBounds(bounds, root, originRow, originCol);
+        int[] clipped = new int[4];
+        for (int i = 0; i < 4; i++) {
+            clipped[i] = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bounds[i]));
+        }
+        return clipped;
+    }
+
+    /**
+     * Widen the bounds to hold the living cells of a node, skipping nodes that
+     * lie wholly inside them already.
+     */
+    private static void extendBounds(long[] bounds, Node node, long row, long col) {
+        long size = 1L << node.level;
+        if (node.population == 0
+                || (row >= bounds[0] && col >= bounds[1] && row + size <= bounds[2] && col + size <= bounds[3])) {
+            return;
+        }
+        if (node.level == 0) {
+            bounds[0] = Math.min(bounds[0], row);
+            bounds[1] = Math.min(bounds[1], col);
+            bounds[2] = Math.max(bounds[2], row + 1);
+            bounds[3] = Math.max(bounds[3], col + 1);
+            return;
+        }
+        long half = size / 2;
+        extendBounds(bounds, node.nw, row, col);
+        extendBounds(bounds, node.ne, row, col + half);
+        extendBounds(bounds, node.sw, row + half, col);
+        extendBounds(bounds, node.se, row + half, col + half);
+    }
+
+    /**
+     * @return The number of nodes currently held in the table.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+}
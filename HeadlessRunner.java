@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Run a simulation from the command line, without a window and without
+ * pausing between generations, and report how fast it ran. The runner drives
+ * Simulator directly, and the simulation keeps its colours as ARGB ints (see
+ * Colors), so no JavaFX class is loaded: it works on machines with no display
+ * and with only the simulation's own classes on the classpath.
+ *
+ * Usage:
+ * java HeadlessRunner [--rows n] [--cols n] [--type name|mixed]
+ *                     [--generations n] [--seed n] [--threads n]
+ *                     [--engine cells|compact|bit|chunked|hash|nondeterministic]
+ *                     [--resume file] [--save file] [--record file]
+ *                     [--pattern file]
+ *
+ * The type is the name of a cell class, as chosen in CellSelection, or mixed
+ * to populate the field with every species. Without a seed a random one is
+ * used, and it is printed so that the run can be repeated. With --resume the
+ * run carries on from a checkpoint instead, see Checkpoint, and the size,
+ * type, engine and seed options are ignored. With --save the simulation is
+ * saved as a checkpoint once the generations have run. With --record every
+ * generation is written to a log that SimulatorReplayView can play back.
+ * With --pattern the field is loaded from a pattern file instead of being
+ * populated at random, see PatternIO, and the type option is ignored.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class HeadlessRunner {
+    private static final String USAGE = "Usage: java HeadlessRunner [--rows n] [--cols n] [--type name|mixed]"
+            + " [--generations n] [--seed n] [--threads n] [--engine cells|compact|bit|chunked|hash|nondeterministic]"
+            + " [--resume file] [--save file] [--record file] [--pattern file]";
+
+    private static final int KEYFRAME_INTERVAL = 100; // Generations between keyframes of a recording.
+
+    private int rows = SimulatorView.GRID_HEIGHT;
+    private int cols = SimulatorView.GRID_WIDTH;
+    private String type = "mixed";
+    private int generations = 1000;
+    private long seed = Randomizer.getSeed();
+    private int threads = 1;
+    private String engine = "cells";
+    private Path resume; // Checkpoint to carry on from, if any.
+    private Path save; // Where to save a checkpoint at the end, if anywhere.
+    private Path record; // Where to log every generation, if anywhere.
+    private Path pattern; // Pattern to start from, if any.
+
+    /**
+     * Run a simulation with the given arguments and print the results.
+     *
+     * @param args The command-line arguments, see the class comment.
+     */
+    public static void main(String[] args) {
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parse(args);
+            runner.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the options from the command line.
+     *
+     * @param args The command-line arguments.
+     * @throws IllegalArgumentException if an option is unknown or has a bad value.
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--rows":
+                rows = positive(args[i], value);
+                break;
+            case "--cols":
+                cols = positive(args[i], value);
+                break;
+            case "--type":
+                if (!value.equals("mixed") && Species.fromName(value) == Species.NONE) {
+                    throw new IllegalArgumentException("Unknown cell type " + value);
+                }
+                type = value;
+                break;
+            case "--generations":
+                generations = positive(args[i], value);
+                break;
+            case "--seed":
+                try {
+                    seed = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad seed " + value);
+                }
+                break;
+            case "--threads":
+                threads = positive(args[i], value);
+                break;
+            case "--engine":
+                engine = value;
+                break;
+            case "--resume":
+                resume = Paths.get(value);
+                break;
+            case "--save":
+                save = Paths.get(value);
+                break;
+            case "--record":
+                record = Paths.get(value);
+                break;
+            case "--pattern":
+                pattern = Paths.get(value);
+                PatternIO.formatOf(pattern); // Checks the extension.
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Parse a whole number greater than zero.
+     */
+    private static int positive(String option, String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException(option + " needs a whole number greater than zero, not " + value);
+    }
+
+    /**
+     * Create the engine named on the command line.
+     *
+     * @return The engine, or null to step Cell objects.
+     */
+    private LifeEngine createEngine() {
+        switch (engine) {
+        case "cells":
+            return null;
+        case "compact":
+            return new CompactField(rows, cols);
+        case "bit":
+            return new BitLifeEngine(rows, cols);
+        case "chunked":
+            return new ChunkedField(rows, cols);
+        case "hash":
+            return new HashLifeEngine(rows, cols);
+        case "nondeterministic":
+            return new NonDeterministicEngine(rows, cols);
+        default:
+            throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    /**
+     * @return The command-line name of the given engine.
+     */
+    private static String engineName(LifeEngine engine) {
+        if (engine instanceof CompactField) {
+            return "compact";
+        } else if (engine instanceof BitLifeEngine) {
+            return "bit";
+        } else if (engine instanceof ChunkedField) {
+            return "chunked";
+        } else if (engine instanceof HashLifeEngine) {
+            return "hash";
+        } else if (engine instanceof NonDeterministicEngine) {
+            return "nondeterministic";
+        }
+        return "cells";
+    }
+
+    /**
+     * Set up the simulation, run it for the given number of generations and
+     * print the throughput and the final statistics.
+     *
+     * @throws IOException if a checkpoint cannot be read or written.
+     */
+    private void run() throws IOException {
+        Simulator simulator;
+        if (resume != null) {
+            simulator = Simulator.loadCheckpoint(resume);
+            simulator.setThreads(threads);
+            rows = simulator.getField().getDepth();
+            cols = simulator.getField().getWidth();
+            type = simulator.getCellType() == null ? "mixed" : simulator.getCellType();
+            engine = engineName(simulator.getEngine());
+            seed = Randomizer.getSeed();
+        } else {
+            simulator = new Simulator(rows, cols);
+            simulator.setEngine(createEngine());
+            simulator.setThreads(threads);
+            // Seed after the engine is set, as setting it resets the weather.
+            Randomizer.setSeed(seed);
+            if (pattern != null) {
+                long start = System.nanoTime();
+                int placed = simulator.loadPattern(pattern);
+                type = simulator.getCellType();
+                System.out.printf("Loaded %d living cells from %s in %.3f s%n", placed, pattern,
+                        (System.nanoTime() - start) / 1e9);
+            } else if (type.equals("mixed")) {
+                simulator.populate();
+            } else {
+                simulator.initializeWithSelectedCellType(type);
+            }
+        }
+
+        if (record != null) {
+            simulator.startRecording(record, KEYFRAME_INTERVAL);
+        }
+
+        LifeEngine tiled = simulator.getEngine();
+        long tilesStepped = 0; // Summed over the generations, if the engine is a CompactField.
+        long start = System.nanoTime();
+        for (int gen = 0; gen < generations; gen++) {
+            simulator.simOneGeneration();
+            if (tiled instanceof CompactField) {
+                tilesStepped += ((CompactField) tiled).getTilesStepped();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        simulator.setThreads(1); // Let the worker threads of a parallel engine finish.
+        simulator.stopRecording();
+        if (save != null) {
+            simulator.saveCheckpoint(save);
+        }
+
+        FieldStats stats = new FieldStats();
+        stats.update(simulator);
+        System.out.println("Grid: " + rows + " x " + cols + ", type: " + type + ", engine: " + engine
+                + ", threads: " + threads + ", seed: " + seed);
+        System.out.printf("Ran %d generations in %.3f s: %.1f generations/s, %.4g cells/s%n", generations, seconds,
+                generations / seconds, (double) rows * cols * generations / seconds);
+        if (tiled instanceof CompactField && generations > 0) {
+            int tileCount = ((CompactField) tiled).getTileCount();
+            double perGeneration = (double) tilesStepped / generations;
+            System.out.printf("Tiles stepped / tiles total: %.1f / %d per generation (%.1f%%)%n", perGeneration,
+                    tileCount, 100 * perGeneration / tileCount);
+        }
+        System.out.println("Generation: " + simulator.getGeneration());
+        System.out.println("Population: " + stats.getPopulationDetails());
+        System.out.println("Number of Disease Alive Cells: " + simulator.getDiseaseAliveCells());
+        System.out.println("Viable: " + stats.isViable());
+    }
+}
@@ -0,0 +1,284 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A deterministic automaton that accepts the same strings as an NFA, built by
+ * subset construction as inputs need it. Each DFA state stands for a set of
+ * states of a CompiledNFA, closed under epsilon-transitions, and its move on each symbol is
+ * worked out the first time it is taken and then kept in a table indexed by
+ * state and symbol id. Once the states an input visits are in the table,
+ * accepts() is one table lookup per character and allocates nothing.
+ *
+ * The table holds at most a fixed number of states. If it fills up, it is
+ * emptied and built again from the state in use, so an automaton whose DFA
+ * would be very large still works, only more slowly. minimise() instead builds
+ * every state up front and merges those that accept the same strings.
+ *
+ * It reads the same symbols as the CompiledNFA it is built from.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class LazyDFA {
+    private static final int DEFAULT_MAX_STATES = 4096;
+    private static final int UNKNOWN = -1; // A move not worked out yet.
+
+    private final CompiledNFA nfa;
+    private final int symbols; // The number of input symbols.
+    private final int maxStates;
+    private final long[] scratch; // The set a move is worked out in.
+
+    private final Map<BitSet, Integer> ids = new HashMap<>(); // DFA state of each set of NFA states.
+    private final List<long[]> sets = new ArrayList<>(); // Set of NFA states of each DFA state.
+    private int[] moves; // The next state, at state * symbols + symbol, or UNKNOWN.
+    private boolean[] accepting; // Whether each DFA state accepts.
+    private int start; // The DFA state to start in.
+    private int dead; // The DFA state with no NFA states, which accepts nothing.
+    private boolean minimised; // Whether every move is in the table, and sets is no longer kept.
+
+    /**
+     * Create a DFA for the given automaton, keeping at most 4096 states.
+     *
+     * @param nfa The automaton, with all its transitions added.
+     */
+    public LazyDFA(NFA nfa) {
+        this(new CompiledNFA(nfa), DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Create a DFA for the given automaton.
+     *
+     * @param nfa       The automaton, compiled.
+     * @param maxStates The most DFA states to keep, at least 3: the dead state,
+     *                  the start state and the state in use.
+     */
+    public LazyDFA(CompiledNFA nfa, int maxStates) {
+        if (maxStates < 3) {
+            throw new IllegalArgumentException("A DFA needs room for at least 3 states");
+        }
+        this.nfa = nfa;
+        this.maxStates = maxStates;
+        symbols = nfa.getSymbolCount();
+        scratch = nfa.newStateSet();
+        reset();
+    }
+
+    /**
+     * Empty the table, keeping only the dead state and the start state.
+     */
+    private void reset() {
+        ids.clear();
+        sets.clear();
+        moves = new int[Math.min(maxStates, 16) * Math.max(symbols, 1)];
+        accepting = new boolean[Math.min(maxStates, 16)];
+        dead = intern(nfa.newStateSet());
+        long[] startSet = nfa.newStateSet();
+        nfa.start(startSet);
+        start = intern(startSet);
+    }
+
+    /**
+     * Determine whether the automaton accepts the given string.
+     *
+     * @param input The string to be checked.
+     * @return true if the automaton accepts the string.
+     */
+    public boolean accepts(String input) {
+        int state = start;
+        for (int i = 0; i < input.length() && state != dead; i++) {
+            int symbol = nfa.symbolOf(input.charAt(i));
+            if (symbol < 0) {
+                return false;
+            }
+            state = move(state, symbol);
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Return the state reached from a state on a symbol, working it out if it
+     * is not yet in the table.
+     */
+    private int move(int state, int symbol) {
+        int next = moves[state * symbols + symbol];
+        if (next == UNKNOWN) {
+            next = computeMove(state, symbol);
+        }
+        return next;
+    }
+
+    /**
+     * Work out a move by stepping the CompiledNFA from the DFA state's set of
+     * NFA states, and note it in the table.
+     */
+    private int computeMove(int state, int symbol) {
+        nfa.step(sets.get(state), symbol, scratch);
+        BitSet key = BitSet.valueOf(scratch);
+        Integer known = ids.get(key);
+        if (known != null) {
+            moves[state * symbols + symbol] = known;
+            return known;
+        }
+        if (sets.size() == maxStates) {
+            reset(); // The old state numbers are gone, so the move is not noted.
+            return intern(scratch.clone());
+        }
+        int next = intern(scratch.clone());
+        moves[state * symbols + symbol] = next;
+        return next;
+    }
+
+    /**
+     * Return the DFA state for a set of NFA states, adding it if needed.
+     */
+    private int intern(long[] set) {
+        BitSet key = BitSet.valueOf(set);
+        Integer known = ids.get(key);
+        if (known != null) {
+            return known;
+        }
+        int id = sets.size();
+        if (accepting.length == id) {
+            accepting = Arrays.copyOf(accepting, Math.min(maxStates, id * 2));
+            moves = Arrays.copyOf(moves, accepting.length * Math.max(symbols, 1));
+        }
+        Arrays.fill(moves, id * symbols, (id + 1) * symbols, UNKNOWN);
+        accepting[id] = nfa.isAccepting(set);
+        ids.put(key, id);
+        sets.add(set);
+        return id;
+    }
+
+    /**
+     * Build every state the DFA can reach, then merge the states that accept
+     * the same strings, using Moore's algorithm: states start out split by
+     * whether they accept, and groups are split again by which groups their
+     * moves lead to, until no group splits.
+     *
+     * @throws IllegalStateException if the DFA has more states than the table
+     *                               can hold.
+     */
+    public void minimise() {
+        if (minimised) {
+            return;
+        }
+        for (int state = 0; state < sets.size(); state++) {
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                if (moves[state * symbols + symbol] == UNKNOWN) {
+                    if (sets.size() == maxStates) {
+                        nfa.step(sets.get(state), symbol, scratch);
+                        if (!ids.containsKey(BitSet.valueOf(scratch))) {
+                            throw new IllegalStateException("The DFA has more than " + maxStates + " states");
+                        }
+                    }
+                    computeMove(state, symbol);
+                }
+            }
+        }
+
+        int count = sets.size();
+        int[] group = new int[count];
+        for (int state = 0; state < count; state++) {
+            group[state] = accepting[state] ? 1 : 0;
+        }
+        int groups = 0;
+        while (true) {
+            // Number the groups by each state's group and those its moves lead to.
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] split = new int[count];
+            for (int state = 0; state < count; state++) {
+                List<Integer> signature = new ArrayList<>(symbols + 1);
+                signature.add(group[state]);
+                for (int symbol = 0; symbol < symbols; symbol++) {
+                    signature.add(group[moves[state * symbols + symbol]]);
+                }
+                Integer id = signatures.get(signature);
+                if (id == null) {
+                    id = signatures.size();
+                    signatures.put(signature, id);
+                }
+                split[state] = id;
+            }
+            group = split;
+            if (signatures.size() == groups) {
+                break;
+            }
+            groups = signatures.size();
+        }
+
+        int[] newMoves = new int[groups * symbols];
+        boolean[] newAccepting = new boolean[groups];
+        for (int state = 0; state < count; state++) {
+            newAccepting[group[state]] = accepting[state];
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                newMoves[group[state] * symbols + symbol] = group[moves[state * symbols + symbol]];
+            }
+        }
+        moves = newMoves;
+        accepting = newAccepting;
+        start = group[start];
+        dead = group[dead];
+        ids.clear();
+        sets.clear();
+        minimised = true;
+    }
+
+    /**
+     * @return The state the DFA starts in.
+     */
+    public int getStartState() {
+        return start;
+    }
+
+    /**
+     * @return The state that accepts nothing, which every move from leads
+     *         back to.
+     */
+    public int getDeadState() {
+        return dead;
+    }
+
+    /**
+     * @param c A character of an input.
+     * @return The id of the symbol for the character, or -1 if it is not one.
+     */
+    public int symbolOf(char c) {
+        return nfa.symbolOf(c);
+    }
+
+    /**
+     * Return the state a symbol leads to. Unlike accepts(), which may empty the
+     * table and so renumber the states, this needs the table to be complete,
+     * so the state numbers it gives out stay valid.
+     *
+     * @param state  A state of the DFA.
+     * @param symbol The id of a symbol, or -1 to go to the dead state.
+     * @return The next state.
+     * @throws IllegalStateException if minimise() has not been called.
+     */
+    public int step(int state, int symbol) {
+        if (!minimised) {
+            throw new IllegalStateException("The DFA must be minimised before stepping it state by state");
+        }
+        return symbol < 0 ? dead : moves[state * symbols + symbol];
+    }
+
+    /**
+     * @param state A state of the DFA.
+     * @return true if the state accepts.
+     */
+    public boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * @return The number of DFA states in the table.
+     */
+    public int getStateCount() {
+        return minimised ? accepting.length : sets.size();
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * A way of storing and stepping the simulation grid without one Cell object
+ * per location. The Simulator places life forms into an engine by species id
+ * and steps it once per generation. The Field passed to step() still provides
+ * the temperature and time of day for that generation.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public interface LifeEngine {
+    /**
+     * Empty every location.
+     */
+    void clear();
+
+    /**
+     * Place a new life form at the given location, replacing whatever was there.
+     * A NonDeterministicCells automaton starts ALIVE if the cell does and DEAD
+     * otherwise.
+     *
+     * @param row     Row coordinate of the location.
+     * @param col     Column coordinate of the location.
+     * @param species The species id, see Species.
+     * @param alive   Whether the new life form starts alive.
+     */
+    void place(int row, int col, int species, boolean alive);
+
+    /**
+     * Advance every location by one generation.
+     *
+     * @param environment The field holding the temperature and time of day.
+     */
+    void step(Field environment);
+
+    /**
+     * @return true if there is a living cell at the given location.
+     */
+    boolean isAlive(int row, int col);
+
+    /**
+     * @return The species id at the given location, Species.NONE if empty.
+     */
+    int getSpecies(int row, int col);
+
+    /**
+     * @return true if the cell at the given location is diseased.
+     */
+    boolean isDiseased(int row, int col);
+
+    /**
+     * @return The age in generations of the cell at the given location.
+     */
+    int getAge(int row, int col);
+
+    /**
+     * @return true if the NonDeterministicCells automaton at the given location
+     *         is in the ALIVE state.
+     */
+    boolean isAutomatonAlive(int row, int col);
+
+    /**
+     * @return The number of generations stepped since the engine was cleared,
+     *         which the random numbers drawn depend on.
+     */
+    int getSteps();
+
+    /**
+     * Carry on from a checkpoint taken after the given number of generations.
+     * Call on a cleared engine, before restoring any cells.
+     *
+     * @param steps The number of generations stepped.
+     */
+    void setSteps(int steps);
+
+    /**
+     * Place a life form in the state it was in when a checkpoint was taken.
+     *
+     * @param row            Row coordinate of the location.
+     * @param col            Column coordinate of the location.
+     * @param species        The species id, see Species.
+     * @param alive          Whether the life form is alive.
+     * @param age            Its age in generations.
+     * @param diseased       Whether it is diseased.
+     * @param automatonAlive Whether its NonDeterministicCells automaton is in
+     *                       the ALIVE state.
+     */
+    void restore(int row, int col, int species, boolean alive, int age, boolean diseased, boolean automatonAlive);
+
+    /**
+     * @return The depth of the grid.
+     */
+    int getDepth();
+
+    /**
+     * @return The width of the grid.
+     */
+    int getWidth();
+
+    /**
+     * Return the number of living cells of one species. Engines keep this up to
+     * date as cells are born and die, so it is cheap to call every generation.
+     *
+     * @param species The species id, see Species.
+     * @return The number of living cells of the species.
+     */
+    int getLivingCount(int species);
+
+    /**
+     * @return The number of cells that are both alive and diseased.
+     */
+    int getDiseasedAliveCount();
+
+    /**
+     * @param species The species id, see Species.
+     * @return The number of cells of the species that are both alive and
+     *         diseased.
+     */
+    int getDiseasedAliveCount(int species);
+}
@@ -1,5 +1,6 @@
 /**
- * Represent a location in a rectangular grid.
+ * Represent a location in a rectangular grid. Code that handles many
+ * locations at once uses packed coordinates instead, see Coordinates.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
@@ -41,13 +42,19 @@ public class Location {
     }
 
     /**
-     * Use the top 16 bits for the row value and the bottom for
-     * the column. Except for very big grids, this should give a
-     * unique hash code for each (row, col) pair.
+     * Hash the packed row and column, so that columns beyond 65,535 do
+     * not run into the row as they did with (row << 16) + col.
      * @return A hashcode for the location.
      */
     public int hashCode() {
-        return (row << 16) + col;
+        return Coordinates.hash(pack());
+    }
+
+    /**
+     * @return The row and column packed into one value, see Coordinates.
+     */
+    public long pack() {
+        return Coordinates.pack(row, col);
     }
 
     /**
@@ -31,8 +31,8 @@ public class Mutualism extends Symbiosis {
      * survival) and reducing their age, thereby extending their lifespan.
      */
     public void mutualistic() {
-        Location hostLoc = host.getLocation();
-        Location symbiontLoc = symbiont.getLocation();
+        long hostLoc = host.getCoordinates();
+        long symbiontLoc = symbiont.getCoordinates();
 
         // Check if host and symbiont are adjacent to each other.
         if (Field.areNeighbours(hostLoc, symbiontLoc)) {
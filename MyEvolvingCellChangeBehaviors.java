@@ -1,4 +1,3 @@
-import javafx.scene.paint.Color; 
 import java.util.List;
 
 /**
@@ -10,6 +9,8 @@ import java.util.List;
  * @version 2024.02.28
  */
 public class MyEvolvingCellChangeBehaviors extends Cell {
+    static final int MAX_AGE = 200000000; // The age at which an evolving cell dies.
+
     /**
      * Constructor to create a new evolving cell.
      * 
@@ -18,9 +19,9 @@ public class MyEvolvingCellChangeBehaviors extends Cell {
      * @param col        The color of the cell.
      * @param diseasable Indicates if the cell can be diseased.
      */
-    public MyEvolvingCellChangeBehaviors(Field field, Location location, Color col, boolean diseasable) {
+    public MyEvolvingCellChangeBehaviors(Field field, Location location, int col, boolean diseasable) {
         super(field, location, col, diseasable);
-        setMaxAge(200000000);
+        setMaxAge(MAX_AGE);
         setParasitism(true, false); // This cell can be parasitized but not a host.
         setMutualism(false, false); // This cell does not engage in mutualism.
     }
@@ -32,27 +33,37 @@ public class MyEvolvingCellChangeBehaviors extends Cell {
     public void act(List<Cell> newCell) {
         checkAge();// Check the cell's age and handle aging.
        
-        List<Cell> neighbours = getField().getLivingNeighbours(getLocation());
+        int neighbours = getField().countLivingNeighbours(getRow(), getCol());
         
         // Handle behavior if the cell is diseased.
         if (getDiseased()) {
             infectedAct(); // Perform actions specific to infected cells.
-            disease.spreadDisease(getField(), getLocation()); // Spread the disease if infected.
+            disease.spreadDisease(getField(), getRow(), getCol()); // Spread the disease if infected.
         } else {
-            // Behavior changes based on the cell's age.
-            if (getAge() <= 10) {
-                // First behavior: When age <= 10, cell stays alive if it has 1 or 0 neighbors.
-                setNextState(neighbours.size() < 2); 
-            } else if (getAge() > 10 && getAge() < 50) {
-                // Second behavior: When age is between 11 and 49, cell stays alive if it has 2 or 0 neighbors.
-                setNextState(neighbours.size() ==2 && neighbours.size() == 0);         
-            } else {
-                // Third behavior: When age >= 50, cell stays alive only if it has 1 neighbors.
-                setNextState(neighbours.size() == 1);
-            }  
+            setNextState(nextState(neighbours, getAge()));
         }
         // Attempt to recover the cell if it meets the recovery conditions.
         CellRecovery.attemptRecovery(this, getField());
         updataAge(); //Increase age each time when act() is call.
     }
+
+    /**
+     * The evolving rule for a cell that is not diseased. The behavior changes
+     * based on the cell's age.
+     *
+     * @param neighbours The number of live neighbours.
+     * @param age        The current age of the cell.
+     * @return true if the cell will be alive in the next generation.
+     */
+    static boolean nextState(int neighbours, double age) {
+        if (age <= 10) {
+            // First behavior: When age <= 10, cell stays alive if it has 1 or 0 neighbors.
+            return neighbours < 2;
+        } else if (age > 10 && age < 50) {
+            // Second behavior: When age is between 11 and 49, cell stays alive if it has 2 or 0 neighbors.
+            return neighbours == 2 && neighbours == 0;
+        }
+        // Third behavior: When age >= 50, cell stays alive only if it has 1 neighbors.
+        return neighbours == 1;
+    }
 }
\ No newline at end of file
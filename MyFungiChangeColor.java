@@ -1,4 +1,3 @@
-import javafx.scene.paint.Color;
 import java.util.List;
 
 /**
@@ -8,6 +7,8 @@ import java.util.List;
  * @version 2024.02.28
  */
 public class MyFungiChangeColor extends Cell {
+    static final int MAX_AGE = 200000; // The age at which a MyFungiChangeColor dies.
+
     /**
      * Create a new MyFungiChangeColor.
      * 
@@ -16,9 +17,9 @@ public class MyFungiChangeColor extends Cell {
      * @param col        The color of the cell.
      * @param diseasable Indicates if the cell can be diseased.
      */
-    public MyFungiChangeColor(Field field, Location location, Color col, boolean diseasable) {
+    public MyFungiChangeColor(Field field, Location location, int col, boolean diseasable) {
         super(field, location, col, diseasable);
-        setMaxAge(200000);
+        setMaxAge(MAX_AGE);
         setParasitism(true, true); // This cell can be parasitized and be a host.
         setMutualism(false, false); // This cell does not engage in mutualism.
         setDiseasable(true); // This cell can be diseased.
@@ -31,35 +32,50 @@ public class MyFungiChangeColor extends Cell {
     public void act(List<Cell> newCell) {
         checkAge(); // Check the cell's age and handle aging.
 
-        disease.infectCell(getDiseasable()); // Check if the cell gets infected based on its disease susceptibility.
+        disease.infectCell(getDiseasable(), getCoordinates()); // Check if the cell gets infected based on its disease susceptibility.
 
-        List<Cell> neighbours = getField().getLivingNeighbours(getLocation());
+        int neighbours = getField().countLivingNeighbours(getRow(), getCol());
         setNextState(false);
 
         // Handle behavior if the cell is diseased.
         if (getDiseased()) {
             infectedAct(); // Perform actions specific to infected cells.
-            disease.spreadDisease(getField(), getLocation()); // Spread the disease if infected.
+            disease.spreadDisease(getField(), getRow(), getCol()); // Spread the disease if infected.
         } else {
             // Change the color of the cell based on the number of live neighbors and its
             // age.
-            if (neighbours.size() == 1) {
-                if (getAge() < 20) {
-                    setColor(Color.BLUE); // Color changes to blue in infancy
-                    setNextState(true);
-                } else {
-                    setColor(Color.BLACK);// Cell will die soon.
-
-                }
-            } else if (neighbours.size() == 2 && getAge() < 100) {
-                setColor(Color.GREEN); // Color changes to green when mature.
-                setNextState(true);
-            } else {
-                setColor(Color.BLACK); // Will be dead
-            }
+            setColor(colorFor(neighbours, getAge()));
+            setNextState(nextState(neighbours, getAge()));
         }
         // Attempt to recover the cell if it meets the recovery conditions.
         CellRecovery.attemptRecovery(this, getField());
         updataAge(); // Increase age each time act() is called.
     }
+
+    /**
+     * The MyFungiChangeColor rule for a cell that is not diseased.
+     *
+     * @param neighbours The number of live neighbours.
+     * @param age        The current age of the cell.
+     * @return true if the cell will be alive in the next generation.
+     */
+    static boolean nextState(int neighbours, double age) {
+        return (neighbours == 1 && age < 20) || (neighbours == 2 && age < 100);
+    }
+
+    /**
+     * The color a cell that is not diseased takes on for the next generation.
+     *
+     * @param neighbours The number of live neighbours.
+     * @param age        The current age of the cell.
+     * @return Blue in infancy, green when mature, black if it will be dead.
+     */
+    static int colorFor(int neighbours, double age) {
+        if (neighbours == 1 && age < 20) {
+            return Colors.BLUE; // Color changes to blue in infancy
+        } else if (neighbours == 2 && age < 100) {
+            return Colors.GREEN; // Color changes to green when mature.
+        }
+        return Colors.BLACK; // Will be dead
+    }
 }
\ No newline at end of file
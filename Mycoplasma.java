@@ -1,4 +1,3 @@
-import javafx.scene.paint.Color;
 import java.util.List;
 
 /**
@@ -12,6 +11,8 @@ import java.util.List;
  */
 
 public class Mycoplasma extends Cell {
+    static final int MAX_AGE = 188888; // The age at which a Mycoplasma dies.
+
     /**
      * Create a new Mycoplasma.
      *
@@ -20,9 +21,9 @@ public class Mycoplasma extends Cell {
      * @param col        The color within the field.
      * @param diseasable Indicates if the cell can be diseased.
      */
-    public Mycoplasma(Field field, Location location, Color col, boolean diseasable) {
+    public Mycoplasma(Field field, Location location, int col, boolean diseasable) {
         super(field, location, col, diseasable);
-        setMaxAge(188888);
+        setMaxAge(MAX_AGE);
         setParasitism(false, false); // The cell cannot be parasitized and cannot be a host.
         setMutualism(true, true); // The cell engages in mutualism both as a participant and a host.
         setDiseasable(true); // The cell can be affected by diseases.
@@ -40,29 +41,46 @@ public class Mycoplasma extends Cell {
      */
     public void act(List<Cell> newCell) {
         checkAge(); // Check and update the age of the cell, possibly leading to natural death.
-        disease.infectCell(getDiseasable()); // Check if the cell gets infected based on its disease susceptibility.
-        List<Cell> neighbours = getField().getLivingNeighbours(getLocation()); // Get living neighbours.
+        disease.infectCell(getDiseasable(), getCoordinates()); // Check if the cell gets infected based on its disease susceptibility.
+        int neighbours = getField().countLivingNeighbours(getRow(), getCol()); // Get living neighbours.
         setNextState(false);
 
         if (getDiseased()) {
             infectedAct(); // Define behavior if the cell is infected.
-            disease.spreadDisease(getField(), getLocation()); // Spread disease if the cell is infected.
+            disease.spreadDisease(getField(), getRow(), getCol()); // Spread disease if the cell is infected.
         } else {
-            if (isAlive()) {
-                // Determine the cell's next state based on the number of live neighbours.
-                if (neighbours.size() < 2 || neighbours.size() > 3) {
-                    setNextState(false); // Cell dies if it has fewer than two or more than three neighbours.
-                } else if (neighbours.size() == 2 || neighbours.size() == 3) {
-                    setNextState(true); // Cell survives if it has two or three neighbours.
-                }
-            } else {
-                if (neighbours.size() == 3) {
-                    setNextState(true); // Dead cell becomes alive if it has exactly three neighbours.
-                }
-            }
+            setNextState(nextState(isAlive(), neighbours));
         }
         // Attempt to recover the cell if it meets the recovery conditions.
         CellRecovery.attemptRecovery(this, getField());
         updataAge(); // Update the cell's age each generation.
     }
+
+    /**
+     * A dead Mycoplasma with exactly three live neighbours comes alive. Its age
+     * keeps counting while it is dead, as it does on the engines.
+     */
+    public void actDead() {
+        setNextState(nextState(false, getField().countLivingNeighbours(getRow(), getCol())));
+        updataAge();
+    }
+
+    protected boolean canBeBorn() {
+        return true;
+    }
+
+    /**
+     * The Mycoplasma rule for a cell that is not diseased.
+     *
+     * @param alive      Whether the cell is currently alive.
+     * @param neighbours The number of live neighbours.
+     * @return true if the cell will be alive in the next generation.
+     */
+    static boolean nextState(boolean alive, int neighbours) {
+        if (alive) {
+            // Cell survives with two or three neighbours, otherwise it dies.
+            return neighbours == 2 || neighbours == 3;
+        }
+        return neighbours == 3; // Dead cell becomes alive if it has exactly three neighbours.
+    }
 }
\ No newline at end of file
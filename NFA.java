@@ -13,6 +13,8 @@ import java.util.Set;
 public class NFA {
 	private NFAState startState; // The starting state of the NFA.
 	private Set<NFAState> states; // A set of all states in the NFA.
+	private CompiledNFA compiled; // The form accepts() uses once compiled, or null.
+	private LazyDFA dfa; // The DFA accepts() uses once compiled, or null.
 
 	/**
 	 * Constructor for creating an NFA with a specified start state.
@@ -33,6 +35,46 @@ public class NFA {
 		states.add(state);
 	}
 
+	/**
+	 * @return The starting state of the NFA.
+	 */
+	public NFAState getStartState() {
+		return startState;
+	}
+
+	/**
+	 * Numbers the states and symbols of this NFA and works out its
+	 * epsilon-closures, so that accepts() can follow every state at once with a
+	 * few bitwise operations. Call it once all the transitions have been added,
+	 * as the compiled form does not see transitions added later.
+	 * 
+	 * @return The compiled form.
+	 */
+	public CompiledNFA compile() {
+		compiled = new CompiledNFA(this);
+		dfa = null;
+		return compiled;
+	}
+
+	/**
+	 * Builds a DFA for this NFA, which accepts() then uses instead of following
+	 * every state at once. Call it once all the transitions have been added, as
+	 * the DFA does not see transitions added later.
+	 * 
+	 * @param maxStates The most DFA states to keep at once.
+	 * @param minimise  Whether to build every DFA state now and merge those that
+	 *                  accept the same strings.
+	 * @return The DFA built.
+	 */
+	public LazyDFA compile(int maxStates, boolean minimise) {
+		LazyDFA built = new LazyDFA(compile(), maxStates);
+		if (minimise) {
+			built.minimise();
+		}
+		dfa = built;
+		return built;
+	}
+
 	/**
 	 * Determines if the NFA accepts a given input string.
 	 * 
@@ -40,6 +82,12 @@ public class NFA {
 	 * @return true if the NFA accepts the string, false otherwise.
 	 */
 	public boolean accepts(String input) {
+		if (dfa != null) {
+			return dfa.accepts(input);
+		}
+		if (compiled != null) {
+			return compiled.accepts(input);
+		}
 		Set<NFAState> currentStates = new HashSet<>();
 		currentStates.add(startState); // Start with the initial state.
 		currentStates.addAll(eClosure(startState)); // Include states reachable by epsilon-transitions.
@@ -50,7 +98,9 @@ public class NFA {
 			// For each current state, find and add the next states based on the input
 			// character.
 			for (NFAState state : currentStates) {
-				List<NFAState> transitions = state.getNextStates(String.valueOf(c));
+				String symbol = String.valueOf(c);
+				// The symbol of epsilon-transitions is never read from the input.
+				List<NFAState> transitions = symbol.equals(NFAState.EPSILON) ? List.of() : state.getNextStates(symbol);
 				for (NFAState nextState : transitions) {
 					nextStates.add(nextState);
 					nextStates.addAll(eClosure(nextState)); // Include states reachable by epsilon-transitions.
@@ -90,7 +140,7 @@ public class NFA {
 	private void exploreEClosure(NFAState state, Set<NFAState> closure) {
 		closure.add(state); // Add the state to the closure.
 		// Get states reachable from the current state via epsilon-transitions.
-		List<NFAState> epsilonTransitions = state.getNextStates("epsilon");
+		List<NFAState> epsilonTransitions = state.getNextStates(NFAState.EPSILON);
 		for (NFAState nextState : epsilonTransitions) {
 			// Recursively explore each state if not already in the closure.
 			if (!closure.contains(nextState)) {
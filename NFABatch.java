@@ -0,0 +1,242 @@
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Decide which of many inputs an NFA accepts, sharing one CompiledNFA among
+ * several threads. The inputs are split into runs of whole 64-input words of
+ * the result, and each run is checked by one thread with sets of states of its
+ * own, so the threads write to separate parts of the result and need no locks.
+ * Any NFA built from NFAState objects can be used, such as the one in NFARun.
+ *
+ * Each evaluation also times itself, and notes how many inputs each thread
+ * checked and for how long, for the throughput of each core.
+ *
+ * A batch is used by one thread at a time.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class NFABatch {
+    private static final int RUN_WORDS = 64; // Words of the result checked as one run.
+
+    private final CompiledNFA nfa;
+    private final int threads;
+    private final ForkJoinPool pool; // Checks runs in parallel, null for a single thread.
+
+    /**
+     * Compile the given automaton for batches checked on the given number of
+     * threads.
+     *
+     * @param nfa     The automaton, with all its transitions added.
+     * @param threads The number of threads, at least one.
+     */
+    public NFABatch(NFA nfa, int threads) {
+        this(new CompiledNFA(nfa), threads);
+    }
+
+    /**
+     * Create batches of a compiled automaton, checked on the given number of
+     * threads.
+     *
+     * @param nfa     The compiled automaton.
+     * @param threads The number of threads, at least one.
+     */
+    public NFABatch(CompiledNFA nfa, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        this.nfa = nfa;
+        this.threads = threads;
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Check every input in a stream.
+     *
+     * @param inputs The inputs, in order.
+     * @return Which inputs were accepted, with the throughput.
+     */
+    public Result evaluate(Stream<? extends CharSequence> inputs) {
+        return evaluate(inputs.toArray(CharSequence[]::new));
+    }
+
+    /**
+     * Check every input in an array.
+     *
+     * @param inputs The inputs.
+     * @return Which inputs were accepted, with the throughput.
+     */
+    public Result evaluate(CharSequence[] inputs) {
+        long[] accepted = new long[(inputs.length + 63) >>> 6];
+        // The inputs checked and the nanoseconds spent by each thread. The
+        // calling thread may check runs too while it waits.
+        Map<Thread, long[]> timings = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        Run all = new Run(inputs, accepted, timings, 0, accepted.length);
+        if (pool != null) {
+            pool.invoke(all);
+        } else {
+            all.check();
+        }
+        return new Result(BitSet.valueOf(accepted), inputs.length, System.nanoTime() - start, timings);
+    }
+
+    /**
+     * @return The number of threads inputs are checked on.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Stop the threads. The batch cannot be used afterwards.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks the inputs of a range of words of the result, splitting it in half
+     * until each part is at most one run.
+     */
+    private class Run extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence[] inputs;
+        private final long[] accepted;
+        private final Map<Thread, long[]> timings;
+        private final int fromWord, toWord;
+
+        Run(CharSequence[] inputs, long[] accepted, Map<Thread, long[]> timings, int fromWord, int toWord) {
+            this.inputs = inputs;
+            this.accepted = accepted;
+            this.timings = timings;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+        }
+
+        protected void compute() {
+            if (toWord - fromWord > RUN_WORDS) {
+                int middle = (fromWord + toWord) >>> 1;
+                invokeAll(new Run(inputs, accepted, timings, fromWord, middle),
+                        new Run(inputs, accepted, timings, middle, toWord));
+            } else {
+                check();
+            }
+        }
+
+        /**
+         * Check the inputs of the range on this thread.
+         */
+        void check() {
+            long start = System.nanoTime();
+            long[] current = nfa.newStateSet();
+            long[] next = nfa.newStateSet();
+            int end = Math.min(inputs.length, toWord << 6);
+            for (int word = fromWord; word < toWord; word++) {
+                long bits = 0;
+                for (int i = word << 6, bit = 0; i < end && bit < 64; i++, bit++) {
+                    if (nfa.accepts(inputs[i], current, next)) {
+                        bits |= 1L << bit;
+                    }
+                }
+                accepted[word] = bits;
+            }
+            // Only this thread changes its own entry.
+            long[] timing = timings.computeIfAbsent(Thread.currentThread(), thread -> new long[2]);
+            timing[0] += Math.max(0, end - (fromWord << 6));
+            timing[1] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Which inputs of a batch were accepted, and how quickly they were checked.
+     */
+    public static class Result {
+        private final BitSet accepted;
+        private final int inputs;
+        private final long elapsedNanos;
+        private final long[] checked, busyNanos; // For each thread that checked inputs.
+
+        Result(BitSet accepted, int inputs, long elapsedNanos, Map<Thread, long[]> timings) {
+            this.accepted = accepted;
+            this.inputs = inputs;
+            this.elapsedNanos = elapsedNanos;
+            checked = new long[timings.size()];
+            busyNanos = new long[timings.size()];
+            int i = 0;
+            for (long[] timing : timings.values()) {
+                checked[i] = timing[0];
+                busyNanos[i++] = timing[1];
+            }
+        }
+
+        /**
+         * @return The inputs accepted: bit i is set if input i was.
+         */
+        public BitSet getAccepted() {
+            return accepted;
+        }
+
+        /**
+         * @param index The position of an input.
+         * @return true if the input was accepted.
+         */
+        public boolean isAccepted(int index) {
+            return accepted.get(index);
+        }
+
+        /**
+         * @return The number of inputs checked.
+         */
+        public int getInputs() {
+            return inputs;
+        }
+
+        /**
+         * @return The time the batch took, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return The inputs checked per second over the whole batch.
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : inputs * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return The inputs each thread that took part checked per second of
+         *         its own time spent checking, one entry per thread.
+         */
+        public double[] getThroughputPerCore() {
+            double[] throughput = new double[checked.length];
+            for (int i = 0; i < checked.length; i++) {
+                throughput[i] = busyNanos[i] == 0 ? 0 : checked[i] * 1e9 / busyNanos[i];
+            }
+            return throughput;
+        }
+
+        /**
+         * @return A line giving the count accepted and the throughput.
+         */
+        public String toString() {
+            StringBuilder line = new StringBuilder();
+            line.append(accepted.cardinality()).append(" of ").append(inputs).append(" accepted in ")
+                    .append(String.format("%.1f", elapsedNanos / 1e6)).append(" ms, ")
+                    .append(String.format("%.0f", getThroughput())).append(" inputs/s; per core:");
+            for (double core : getThroughputPerCore()) {
+                line.append(' ').append(String.format("%.0f", core));
+            }
+            return line.toString();
+        }
+    }
+}
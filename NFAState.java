@@ -1,6 +1,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A part of Nondeterministic finite automaton
@@ -10,6 +11,8 @@ import java.util.Map;
  * @version 2024.02.06
  */
 public class NFAState {
+    public static final String EPSILON = "ε"; // The symbol of epsilon-transitions, which read no input.
+
     private String name;
     public boolean isAccepting;
     private Map<String, List<NFAState>> transitions; //transitions will map input symbols to lists of states to account for nondeterminism.
@@ -24,10 +27,14 @@ public class NFAState {
     }
 
     /**
+     * "epsilon" is taken as EPSILON, so either spelling adds an epsilon-transition.
      * @param String symbol input symbol for which the next states are to be determined.0,1,epsilon
      * @param List<NFAState> 
      */
     public void addTransition(String symbol, List<NFAState> nextStates) {
+        if (symbol.equals("epsilon")) {
+            symbol = EPSILON;
+        }
         transitions.put(symbol, nextStates); 
     }
     
@@ -41,6 +48,13 @@ public class NFAState {
         return transitions.getOrDefault(symbol, List.of()); 
     }
     
+    /**
+     * @return The symbols this state has transitions for.
+     */
+    public Set<String> getSymbols() {
+        return transitions.keySet();
+    }
+
     public boolean isAccepting() {
         return isAccepting;
     }
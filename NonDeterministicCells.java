@@ -1,6 +1,5 @@
-import javafx.scene.paint.Color;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Non-deterministic cells It executes the same set of rules during in
@@ -12,13 +11,15 @@ import java.util.Random;
  */
 
 public class NonDeterministicCells extends Cell {
-    private Random rand = new Random(); // Random number generator for probabilistic behavior.
+    static final int MAX_AGE = 1999999; // The age at which a NonDeterministicCells dies.
+    static final double DEATH_PROB = 0.1; // Chance of dying with too few or too many neighbours.
+    static final double SURVIVAL_PROB = 0.9; // Chance of staying alive with two neighbours.
 
-    private enum NFAState { // Enum to represent the state of the cell.
+    private enum AutomatonState { // Enum to represent the state of the cell.
         ALIVE, DEAD
     }
 
-    private NFAState currentState; // Current state of the cell.
+    private AutomatonState currentState; // Current state of the cell.
 
     /**
      * Create a new NonDeterministicCells.
@@ -28,12 +29,12 @@ public class NonDeterministicCells extends Cell {
      * @param col        The color within the field.
      * @param diseasable Indicates if the cell can be diseased.
      */
-    public NonDeterministicCells(Field field, Location location, Color col, boolean diseasable) {
+    public NonDeterministicCells(Field field, Location location, int col, boolean diseasable) {
         super(field, location, col, diseasable);
-        setMaxAge(1999999);
+        setMaxAge(MAX_AGE);
         setParasitism(false, false); // This cell cannot be parasitized and cannot be a host.
         setMutualism(true, false); // This cell engages in mutualism but cannot be a host.
-        currentState = NFAState.ALIVE; // Initial state is ALIVE.
+        currentState = AutomatonState.ALIVE; // Initial state is ALIVE.
     }
 
     /**
@@ -44,30 +45,102 @@ public class NonDeterministicCells extends Cell {
     public void act(List<Cell> newCell) {
         checkAge(); // Check the cell's age and handle aging.
 
-        List<Cell> neighbours = getField().getLivingNeighbours(getLocation());
+        int neighbours = getField().countLivingNeighbours(getRow(), getCol());
         setNextState(false);
 
         // Handle behavior if the cell is diseased.
         if (getDiseased()) {
             infectedAct(); // Perform actions specific to infected cells.
-            disease.spreadDisease(getField(), getLocation()); // Spread the disease if infected.
+            disease.spreadDisease(getField(), getRow(), getCol()); // Spread the disease if infected.
         } else {
             // Non-deterministic behavior based on the number of neighbors.
-            if (isAlive()) {
-                if (neighbours.size() < 2 || neighbours.size() > 3) {
-                    if (rand.nextDouble() < 0.1) { // 10% chance of dying.
-                        currentState = NFAState.DEAD;
-                    }
-                } else if (neighbours.size() == 2) {
-                    if (rand.nextDouble() < 0.9) { // 90% chance of staying alive.
-                        currentState = NFAState.ALIVE;
-                    }
-                }
-            }
-            setNextState(currentState == NFAState.ALIVE); // Update the next state based on current state.
+            boolean automatonAlive = nextAutomatonState(currentState == AutomatonState.ALIVE, isAlive(),
+                    neighbours,
+                    Randomizer.uniform(getField().getSwapCount(), getCoordinates(), Randomizer.AUTOMATON));
+            currentState = automatonAlive ? AutomatonState.ALIVE : AutomatonState.DEAD;
+            setNextState(currentState == AutomatonState.ALIVE); // Update the next state based on current state.
         }
         // Attempt to recover the cell if it meets the recovery conditions.
         CellRecovery.attemptRecovery(this, getField());
         updataAge(); // Increase age each time act() is called.
     }
-}
\ No newline at end of file
+
+    /**
+     * @return true if the automaton is in the ALIVE state.
+     */
+    boolean isAutomatonAlive() {
+        return currentState == AutomatonState.ALIVE;
+    }
+
+    /**
+     * A dead cell's automaton is DEAD, whatever killed it.
+     */
+    protected void die() {
+        super.die();
+        currentState = AutomatonState.DEAD;
+    }
+
+    /**
+     * Set the state of the automaton, as when resuming from a checkpoint.
+     *
+     * @param automatonAlive true for the ALIVE state, false for DEAD.
+     */
+    void setAutomatonAlive(boolean automatonAlive) {
+        currentState = automatonAlive ? AutomatonState.ALIVE : AutomatonState.DEAD;
+    }
+
+    /**
+     * The non-deterministic rule for a cell that is not diseased. The automaton
+     * state is carried between generations and only changes while the cell is
+     * alive.
+     *
+     * @param automatonAlive Whether the automaton is currently in the ALIVE state.
+     * @param alive          Whether the cell is currently alive.
+     * @param neighbours     The number of live neighbours.
+     * @param chance         A random number in [0, 1) drawn for this decision.
+     * @return true if the automaton is in the ALIVE state afterwards.
+     */
+    static boolean nextAutomatonState(boolean automatonAlive, boolean alive, int neighbours, double chance) {
+        if (alive) {
+            if (neighbours < 2 || neighbours > 3) {
+                if (chance < DEATH_PROB) { // 10% chance of dying.
+                    return false;
+                }
+            } else if (neighbours == 2) {
+                if (chance < SURVIVAL_PROB) { // 90% chance of staying alive.
+                    return true;
+                }
+            }
+        }
+        return automatonAlive;
+    }
+
+    /**
+     * Build the rule of nextAutomatonState() as an automaton for a
+     * BehaviourTable, for a cell whose automaton state matches whether it is
+     * alive. With too few or too many neighbours the ALIVE state goes to DEAD
+     * one time in ten; otherwise it stays ALIVE, and DEAD is never left. DEAD
+     * is listed first, so the same random number gives the same decision as
+     * nextAutomatonState().
+     *
+     * @return The automaton, starting in ALIVE.
+     */
+    static NFA createAutomaton() {
+        NFAState alive = new NFAState("ALIVE", true);
+        NFAState dead = new NFAState("DEAD", false);
+        List<NFAState> mostlyAlive = new ArrayList<>();
+        mostlyAlive.add(dead);
+        while (mostlyAlive.size() < Math.round(1 / DEATH_PROB)) {
+            mostlyAlive.add(alive);
+        }
+        for (int neighbours = 0; neighbours <= 8; neighbours++) {
+            if (neighbours < 2 || neighbours > 3) {
+                alive.addTransition(String.valueOf(neighbours), mostlyAlive);
+            }
+        }
+        NFA nfa = new NFA(alive);
+        nfa.addNFAState(alive);
+        nfa.addNFAState(dead);
+        return nfa;
+    }
+}
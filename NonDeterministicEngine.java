@@ -0,0 +1,250 @@
+import java.util.Arrays;
+
+/**
+ * An engine for fields that only hold NonDeterministicCells. The state of
+ * every location is kept in byte planes, and a generation is stepped in two
+ * passes over them: one stencil pass that counts the living neighbours of
+ * every location into a plane of its own, and one that applies the rule of
+ * NonDeterministicCells.nextAutomatonState() and writes the next states to
+ * another plane.
+ *
+ * Most of the rule needs no random number: a living cell with two or three
+ * neighbours whose automaton is ALIVE stays so, and a dead cell stays dead.
+ * Only two kinds of living cell make a random decision, and both have a small
+ * chance of the rare outcome: one whose automaton is ALIVE with too few or too
+ * many neighbours dies with DEATH_PROB, and one whose automaton is DEAD with
+ * two neighbours fails to come back with 1 - SURVIVAL_PROB. Rather than
+ * drawing a number for every such cell, each kind draws the number of cells to
+ * pass over before its next rare outcome from the geometric distribution.
+ * Every cell still has the same chance as under the other engines, but the
+ * numbers are drawn in scan order, so a run gives the same distribution of
+ * outcomes as a CompactField rather than the same cells.
+ *
+ * NonDeterministicCells cannot catch the disease, and there is no other
+ * species to catch it from, so no cell here is ever diseased.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class NonDeterministicEngine implements LifeEngine {
+    private static final int MAX_AGE = NonDeterministicCells.MAX_AGE;
+
+    private final int depth, width;
+    private final byte[] occupied; // 1 if the location holds a NonDeterministicCells.
+    private byte[] alive; // 1 if the cell is alive in this generation.
+    private byte[] nextAlive; // 1 if the cell is alive in the next generation.
+    private final byte[] automatonAlive; // 1 if the automaton is in the ALIVE state.
+    private final byte[] neighbours; // The living neighbours of each location.
+    private final int[] columnSums; // Living cells in each column of the three rows around one row.
+    private final int[] born; // The step at which the cell's age was zero.
+    private int firstBorn = Integer.MAX_VALUE; // No cell was born before this step.
+    private int steps; // Number of generations stepped, so age = steps - born.
+    private int living; // Number of living cells.
+
+    /**
+     * Create an empty engine of the given dimensions.
+     *
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public NonDeterministicEngine(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        int size = depth * width;
+        occupied = new byte[size];
+        alive = new byte[size];
+        nextAlive = new byte[size];
+        automatonAlive = new byte[size];
+        neighbours = new byte[size];
+        columnSums = new int[width];
+        born = new int[size];
+    }
+
+    public void clear() {
+        Arrays.fill(occupied, (byte) 0);
+        Arrays.fill(alive, (byte) 0);
+        Arrays.fill(nextAlive, (byte) 0);
+        Arrays.fill(automatonAlive, (byte) 0);
+        Arrays.fill(born, 0);
+        firstBorn = Integer.MAX_VALUE;
+        steps = 0;
+        living = 0;
+    }
+
+    /**
+     * Place a new NonDeterministicCells at the given location, its automaton in
+     * the ALIVE state if the cell is alive and in DEAD otherwise.
+     *
+     * @throws IllegalArgumentException if the species is not NonDeterministicCells.
+     */
+    public void place(int row, int col, int species, boolean alive) {
+        if (species != Species.NONDETERMINISTIC) {
+            throw new IllegalArgumentException("NonDeterministicEngine only holds NonDeterministicCells");
+        }
+        int index = row * width + col;
+        living += (alive ? 1 : 0) - this.alive[index];
+        occupied[index] = 1;
+        this.alive[index] = (byte) (alive ? 1 : 0);
+        automatonAlive[index] = this.alive[index];
+        born[index] = steps;
+        firstBorn = Math.min(firstBorn, steps);
+    }
+
+    /**
+     * Place a NonDeterministicCells as it was when a checkpoint was taken.
+     * Empty locations are left empty.
+     *
+     * @throws IllegalArgumentException if the species is not NonDeterministicCells,
+     *                                  or the cell is diseased.
+     */
+    public void restore(int row, int col, int species, boolean alive, int age, boolean diseased,
+            boolean automatonAlive) {
+        if (species == Species.NONE && !alive) {
+            return;
+        }
+        if (diseased) {
+            throw new IllegalArgumentException("NonDeterministicCells cannot be diseased");
+        }
+        place(row, col, species, alive);
+        int index = row * width + col;
+        born[index] = steps - age;
+        firstBorn = Math.min(firstBorn, born[index]);
+        this.automatonAlive[index] = (byte) (automatonAlive ? 1 : 0);
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public void setSteps(int steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Advance every cell by one generation.
+     *
+     * @param environment The field, which the rule does not depend on.
+     */
+    public void step(Field environment) {
+        countNeighbours();
+        boolean ageing = steps - firstBorn > MAX_AGE; // Whether any cell can be past its maximum age.
+        double logKeep = Math.log(1 - NonDeterministicCells.DEATH_PROB);
+        double logRevive = Math.log(NonDeterministicCells.SURVIVAL_PROB);
+        int deathDraw = 0, failureDraw = 0;
+        long untilDeath = skip(logKeep, Randomizer.DEATH_GAP, deathDraw++);
+        long untilFailure = skip(logRevive, Randomizer.REVIVAL_GAP, failureDraw++);
+        int nextLiving = 0;
+        for (int index = 0; index < occupied.length; index++) {
+            if (occupied[index] == 0) {
+                nextAlive[index] = 0;
+                continue;
+            }
+            int automaton = automatonAlive[index];
+            if (alive[index] == 0 || (ageing && steps - born[index] > MAX_AGE)) {
+                automaton = 0; // A dead cell stays dead, as does one setDead() kills.
+                automatonAlive[index] = 0;
+            } else {
+                int count = neighbours[index];
+                if (automaton != 0 && (count < 2 || count > 3)) {
+                    if (untilDeath-- == 0) {
+                        automaton = 0; // The 10% chance of dying.
+                        untilDeath = skip(logKeep, Randomizer.DEATH_GAP, deathDraw++);
+                    }
+                } else if (automaton == 0 && count == 2) {
+                    if (untilFailure-- == 0) {
+                        untilFailure = skip(logRevive, Randomizer.REVIVAL_GAP, failureDraw++);
+                    } else {
+                        automaton = 1; // The 90% chance of staying alive.
+                    }
+                }
+                automatonAlive[index] = (byte) automaton;
+            }
+            nextAlive[index] = (byte) automaton;
+            nextLiving += automaton;
+        }
+        byte[] swap = alive;
+        alive = nextAlive;
+        nextAlive = swap;
+        living = nextLiving;
+        steps++;
+    }
+
+    /**
+     * Count the living neighbours of every location, sliding a three by three
+     * window along each row. Locations outside the field count as dead.
+     */
+    private void countNeighbours() {
+        for (int row = 0; row < depth; row++) {
+            int base = row * width;
+            for (int col = 0; col < width; col++) {
+                int sum = alive[base + col];
+                if (row > 0) {
+                    sum += alive[base - width + col];
+                }
+                if (row < depth - 1) {
+                    sum += alive[base + width + col];
+                }
+                columnSums[col] = sum;
+            }
+            int window = columnSums[0] + (width > 1 ? columnSums[1] : 0);
+            for (int col = 0; col < width; col++) {
+                neighbours[base + col] = (byte) (window - alive[base + col]);
+                if (col > 0) {
+                    window -= columnSums[col - 1];
+                }
+                if (col + 2 < width) {
+                    window += columnSums[col + 2];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of cells to pass over before the next rare outcome,
+     *         given the logarithm of the chance of the common one.
+     */
+    private long skip(double logCommon, int purpose, int draw) {
+        double chance = Randomizer.uniform(steps, 0, purpose, draw);
+        return (long) Math.min(Math.log(1 - chance) / logCommon, occupied.length);
+    }
+
+    public boolean isAlive(int row, int col) {
+        return alive[row * width + col] != 0;
+    }
+
+    public int getSpecies(int row, int col) {
+        return occupied[row * width + col] != 0 ? Species.NONDETERMINISTIC : Species.NONE;
+    }
+
+    public boolean isDiseased(int row, int col) {
+        return false;
+    }
+
+    public int getAge(int row, int col) {
+        return steps - born[row * width + col];
+    }
+
+    public boolean isAutomatonAlive(int row, int col) {
+        return automatonAlive[row * width + col] != 0;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getLivingCount(int species) {
+        return species == Species.NONDETERMINISTIC ? living : 0;
+    }
+
+    public int getDiseasedAliveCount() {
+        return 0;
+    }
+
+    public int getDiseasedAliveCount(int species) {
+        return 0;
+    }
+}
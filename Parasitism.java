@@ -32,8 +32,8 @@ public class Parasitism extends Symbiosis {
      * by having its age reduced, thereby extending its lifespan.
      */
     public void parasitic() {
-        Location hostLoc = host.getLocation();
-        Location symbiontLoc = symbiont.getLocation();
+        long hostLoc = host.getCoordinates();
+        long symbiontLoc = symbiont.getCoordinates();
 
         // Check if host and symbiont are adjacent to each other.
         if (Field.areNeighbours(hostLoc, symbiontLoc)) {
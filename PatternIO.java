@@ -0,0 +1,600 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Load patterns in the usual Life file formats into a simulation, and save
+ * the field back out in them:
+ * - RLE (.rle): a header line "x = width, y = height" and runs of cells,
+ *   'b' or '.' for dead and 'o' for alive, '$' ending a row and '!' the
+ *   pattern.
+ * - Plaintext (.cells or .txt): one line per row, '.' for dead and 'O' for
+ *   alive, with '!' starting a comment line.
+ * - Life 1.06 (.lif or .life): a "#Life 1.06" line, then the column and row
+ *   of each living cell, one cell per line.
+ *
+ * The formats are extended with the species of the cells. A comment line
+ * "#S name" (in plaintext "!S name") names the species that 'o', 'O' and the
+ * cells of a Life 1.06 file belong to; without it they are Mycoplasma, whose
+ * rule is Conway's. In RLE and plaintext the letters 'A' to 'D' stand for a
+ * living cell of species 1 to 4, see Species, and a Life 1.06 line may give a
+ * species name or id after the coordinates. A comment line "#R col row" (in
+ * plaintext "!R col row") before the cells places the top left corner of an
+ * RLE or plaintext pattern that far from where it is loaded, as XLife does.
+ *
+ * Patterns are read as a stream, and each living cell is placed as soon as it
+ * is read, so loading takes time in proportion to the size of the file and
+ * no memory beyond the simulation itself. Nothing is placed for dead cells:
+ * once the pattern has been read, the empty locations of the field are filled
+ * with dead cells of the named species, as initializeWithSelectedCellType()
+ * does, except where the engine keeps no dead cells. An unbounded engine
+ * (ChunkedField, HashLifeEngine) takes the whole pattern, while on a bounded
+ * one cells that fall outside the field are left out.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class PatternIO {
+    /**
+     * The file formats.
+     */
+    public enum Format {
+        RLE, PLAINTEXT, LIFE_106
+    }
+
+    private static final int RLE_LINE_LENGTH = 70; // Longest RLE line written, as other programs expect.
+
+    private final Simulator simulator;
+    private int top, left; // Where the top left corner of the pattern goes.
+    private int species = Species.MYCOPLASMA; // The species that unlabelled living cells belong to.
+    private boolean placedAny; // Whether a cell has been placed, after which the species is fixed.
+    private int line = 1; // Line being read, for error messages.
+
+    private PatternIO(Simulator simulator, int top, int left) {
+        this.simulator = simulator;
+        this.top = top;
+        this.left = left;
+    }
+
+    /**
+     * Return the format of a file from its extension.
+     *
+     * @param path The file.
+     * @return The format.
+     * @throws IllegalArgumentException if the extension is not a known one.
+     */
+    public static Format formatOf(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".rle")) {
+            return Format.RLE;
+        } else if (name.endsWith(".cells") || name.endsWith(".txt")) {
+            return Format.PLAINTEXT;
+        } else if (name.endsWith(".lif") || name.endsWith(".life")) {
+            return Format.LIFE_106;
+        }
+        throw new IllegalArgumentException("Unknown pattern format for " + name);
+    }
+
+    /**
+     * Reset the simulation and load a pattern into it, with its top left corner
+     * at the given location.
+     *
+     * @param simulator The simulation, with the engine to use already set.
+     * @param path      The pattern file.
+     * @param top       The row of the top of the pattern.
+     * @param left      The column of the left of the pattern.
+     * @return The number of living cells placed.
+     * @throws IOException if the file cannot be read or is not a valid pattern.
+     */
+    public static int load(Simulator simulator, Path path, int top, int left) throws IOException {
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(simulator, in, formatOf(path), top, left);
+        }
+    }
+
+    /**
+     * Reset the simulation and load a pattern into it from a stream.
+     *
+     * @param simulator The simulation, with the engine to use already set.
+     * @param in        The pattern.
+     * @param format    The format of the pattern.
+     * @param top       The row of the top of the pattern.
+     * @param left      The column of the left of the pattern.
+     * @return The number of living cells placed.
+     * @throws IOException if the stream cannot be read or is not a valid
+     *                     pattern.
+     */
+    public static int load(Simulator simulator, Reader in, Format format, int top, int left) throws IOException {
+        simulator.reset();
+        PatternIO loader = new PatternIO(simulator, top, left);
+        Reader buffered = in instanceof BufferedReader ? in : new BufferedReader(in);
+        int placed;
+        switch (format) {
+        case RLE:
+            placed = loader.readRle(buffered);
+            break;
+        case PLAINTEXT:
+            placed = loader.readPlaintext(buffered);
+            break;
+        default:
+            placed = loader.readLife106(buffered);
+            break;
+        }
+        loader.fillEmpty();
+        simulator.restore(0, Species.getName(loader.species));
+        return placed;
+    }
+
+    /**
+     * Read an RLE pattern, one character at a time.
+     */
+    private int readRle(Reader in) throws IOException {
+        int placed = 0;
+        boolean header = false; // Whether the "x = ..." line has been read.
+        int row = 0, col = 0;
+        int run = 0; // The run count being read, 0 if none.
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                line++;
+                continue;
+            }
+            if (!header) {
+                if (c == '#') {
+                    readComment(in);
+                } else if (c == 'x') {
+                    skipLine(in); // The size and rule, which are not needed to place the cells.
+                    header = true;
+                } else if (!Character.isWhitespace(c)) {
+                    throw error("Expected an RLE header line");
+                }
+                continue;
+            }
+            if (c >= '0' && c <= '9') {
+                run = run * 10 + (c - '0');
+                if (run < 0) {
+                    throw error("Run count too large");
+                }
+                continue;
+            }
+            int count = Math.max(run, 1);
+            run = 0;
+            if (c == 'b' || c == '.') {
+                col += count;
+            } else if (c == 'o' || (c >= 'A' && c < 'A' + Species.COUNT - 1)) {
+                int id = c == 'o' ? species : c - 'A' + 1;
+                for (int i = 0; i < count; i++) {
+                    placed += place(row, col++, id);
+                }
+            } else if (c == '$') {
+                row += count;
+                col = 0;
+            } else if (c == '!') {
+                return placed;
+            } else if (c == '#' && col == 0) {
+                readComment(in);
+            } else if (!Character.isWhitespace(c)) {
+                throw error("Unexpected '" + (char) c + "' in RLE pattern");
+            }
+        }
+        if (!header) {
+            throw error("Missing RLE header line");
+        }
+        return placed; // Some files leave out the final '!'.
+    }
+
+    /**
+     * Read a plaintext pattern, one character at a time.
+     */
+    private int readPlaintext(Reader in) throws IOException {
+        int placed = 0;
+        int row = 0, col = 0;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '!' && col == 0) {
+                readTag(in);
+                line++;
+            } else if (c == '\n') {
+                line++;
+                row++;
+                col = 0;
+            } else if (c == '.') {
+                col++;
+            } else if (c == 'O' || c == '*' || (c >= 'A' && c < 'A' + Species.COUNT - 1)) {
+                placed += place(row, col++, c == 'O' || c == '*' ? species : c - 'A' + 1);
+            } else if (c != '\r' && c != ' ' && c != '\t') {
+                throw error("Unexpected '" + (char) c + "' in plaintext pattern");
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Read a Life 1.06 pattern, one line at a time.
+     */
+    private int readLife106(Reader in) throws IOException {
+        BufferedReader lines = (BufferedReader) in;
+        String text = lines.readLine();
+        if (text == null || !text.trim().equals("#Life 1.06")) {
+            throw error("Expected a #Life 1.06 line");
+        }
+        int placed = 0;
+        while ((text = lines.readLine()) != null) {
+            line++;
+            text = text.trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            if (text.startsWith("#")) {
+                parseTag(text.substring(1));
+                continue;
+            }
+            String[] fields = text.split("\\s+");
+            if (fields.length < 2 || fields.length > 3) {
+                throw error("Expected a column and row");
+            }
+            int id = fields.length == 3 ? parseSpecies(fields[2]) : species;
+            try {
+                placed += place(Integer.parseInt(fields[1]), Integer.parseInt(fields[0]), id);
+            } catch (NumberFormatException e) {
+                throw error("Bad coordinates " + text);
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Read the rest of a '#' comment line in an RLE pattern.
+     */
+    private void readComment(Reader in) throws IOException {
+        readTag(in);
+        line++;
+    }
+
+    /**
+     * Read the rest of a comment line, up to and including its end, and take
+     * note of the species or position if it is a tag.
+     */
+    private void readTag(Reader in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (text.length() < 256) { // A tag is short; the rest of a long comment is not kept.
+                text.append((char) c);
+            }
+        }
+        parseTag(text.toString());
+    }
+
+    /**
+     * Take note of the species or position given by a comment, if it is a
+     * species or position tag.
+     *
+     * @param comment The comment, after the '#' or '!'.
+     */
+    private void parseTag(String comment) throws IOException {
+        if (comment.startsWith("S ")) {
+            if (placedAny) {
+                throw error("The species must be given before the cells");
+            }
+            species = parseSpecies(comment.substring(2).trim());
+        } else if (comment.startsWith("R ")) {
+            if (placedAny) {
+                throw error("The position must be given before the cells");
+            }
+            String[] fields = comment.substring(2).trim().split("\\s+");
+            try {
+                left += Integer.parseInt(fields[0]);
+                top += Integer.parseInt(fields[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw error("Bad position " + comment.substring(2).trim());
+            }
+        }
+    }
+
+    /**
+     * @return The species id of the given name or number.
+     */
+    private int parseSpecies(String name) throws IOException {
+        int id = Species.fromName(name);
+        if (id == Species.NONE) {
+            try {
+                id = Integer.parseInt(name);
+            } catch (NumberFormatException e) {
+                id = Species.NONE;
+            }
+        }
+        if (id <= Species.NONE || id >= Species.COUNT) {
+            throw error("Unknown species " + name);
+        }
+        return id;
+    }
+
+    /**
+     * Skip the rest of the current line.
+     */
+    private void skipLine(Reader in) throws IOException {
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            // Skip.
+        }
+        line++;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at line " + line);
+    }
+
+    /**
+     * Place a living cell of the pattern, unless it is outside a bounded field.
+     *
+     * @return 1 if the cell was placed, otherwise 0.
+     */
+    private int place(int row, int col, int id) {
+        if (!placedAny) {
+            placedAny = true;
+            startPlacing();
+        }
+        row += top;
+        col += left;
+        if (!isUnbounded(simulator.getEngine())) {
+            Field field = simulator.getField();
+            if (row < 0 || row >= field.getDepth() || col < 0 || col >= field.getWidth()) {
+                return 0;
+            }
+        }
+        simulator.placeCell(row, col, id, Simulator.getColor(id), true);
+        return 1;
+    }
+
+    /**
+     * Get the engine ready for the first cell, now the species is known.
+     */
+    private void startPlacing() {
+        LifeEngine engine = simulator.getEngine();
+        if (engine instanceof ChunkedField) {
+            ((ChunkedField) engine).setBackground(species);
+        }
+    }
+
+    /**
+     * Fill the locations of the field where nothing was placed with dead cells
+     * of the species, so that cells can be born there.
+     */
+    private void fillEmpty() {
+        LifeEngine engine = simulator.getEngine();
+        if (!placedAny) {
+            startPlacing();
+        }
+        if (engine instanceof HashLifeEngine
+                || (engine instanceof ChunkedField && ((ChunkedField) engine).getBackground() == species)) {
+            return; // The dead cells are not stored, or are there already.
+        }
+        Field field = simulator.getField();
+        for (int row = 0; row < field.getDepth(); row++) {
+            for (int col = 0; col < field.getWidth(); col++) {
+                boolean empty = engine == null ? field.getObjectAt(row, col) == null
+                        : engine.getSpecies(row, col) == Species.NONE && !engine.isAlive(row, col);
+                if (empty) {
+                    simulator.placeCell(row, col, species, Simulator.getColor(species), false);
+                }
+            }
+        }
+    }
+
+    private static boolean isUnbounded(LifeEngine engine) {
+        return engine instanceof ChunkedField || engine instanceof HashLifeEngine;
+    }
+
+    /**
+     * Save the living cells of the field to a file, in the format its
+     * extension gives.
+     *
+     * @param simulator The simulation.
+     * @param path      The file to write, replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void save(Simulator simulator, Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            save(simulator, out, formatOf(path));
+        }
+    }
+
+    /**
+     * Save the living cells of the field to a stream. The whole field is saved,
+     * so that loading the pattern at the top left corner puts every cell back
+     * where it was. An unbounded engine (ChunkedField, HashLifeEngine) may
+     * hold living cells outside the field, so there the box saved is widened
+     * to hold them too; if it then starts above or left of the field, an RLE
+     * or plaintext pattern gives its corner with a position tag. The rule is
+     * only written in an RLE header for Mycoplasma, the species whose rule is
+     * Conway's. Cells of the species the simulation was set up with, or
+     * Mycoplasma for a mixed field, are written as plain living cells and the
+     * others with their species.
+     *
+     * @param simulator The simulation.
+     * @param out       Where to write the pattern.
+     * @param format    The format to write.
+     * @throws IOException if the stream cannot be written.
+     */
+    public static void save(Simulator simulator, Writer out, Format format) throws IOException {
+        Writer buffered = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+        int species = Species.fromName(simulator.getCellType() == null ? "" : simulator.getCellType());
+        if (species == Species.NONE) {
+            species = Species.MYCOPLASMA;
+        }
+        int[] box = savedBox(simulator);
+        switch (format) {
+        case RLE:
+            writeRle(simulator, buffered, species, box);
+            break;
+        case PLAINTEXT:
+            writePlaintext(simulator, buffered, species, box);
+            break;
+        default:
+            writeLife106(simulator, buffered, species, box);
+            break;
+        }
+        buffered.flush();
+    }
+
+    /**
+     * Return the part of the grid to save: the field, widened on an unbounded
+     * engine to hold every living cell.
+     *
+     * @return The top row, left column, bottom row and right column, the last
+     *         two exclusive.
+     */
+    private static int[] savedBox(Simulator simulator) {
+        Field field = simulator.getField();
+        int[] box = { 0, 0, field.getDepth(), field.getWidth() };
+        LifeEngine engine = simulator.getEngine();
+        int[] living = null;
+        if (engine instanceof ChunkedField) {
+            living = ((ChunkedField) engine).getLivingBounds();
+        } else if (engine instanceof HashLifeEngine) {
+            living = ((HashLifeEngine) engine).getLivingBounds();
+        }
+        if (living != null) {
+            box[0] = Math.min(box[0], living[0]);
+            box[1] = Math.min(box[1], living[1]);
+            box[2] = Math.max(box[2], living[2]);
+            box[3] = Math.max(box[3], living[3]);
+        }
+        return box;
+    }
+
+    /**
+     * @return The species of the living cell at the given location, or
+     *         Species.NONE if there is none.
+     */
+    private static int livingAt(Simulator simulator, int row, int col) {
+        LifeEngine engine = simulator.getEngine();
+        if (engine != null) {
+            return engine.isAlive(row, col) ? engine.getSpecies(row, col) : Species.NONE;
+        }
+        Field field = simulator.getField();
+        return field.isAliveAt(row, col) ? Species.of(field.getObjectAt(row, col)) : Species.NONE;
+    }
+
+    /**
+     * @return The RLE or plaintext letter for a living cell of the given
+     *         species.
+     */
+    private static char letterFor(int id, int species, char plain) {
+        return id == species ? plain : (char) ('A' + id - 1);
+    }
+
+    private static void writeRle(Simulator simulator, Writer out, int species, int[] box) throws IOException {
+        out.write("#S " + Species.getName(species) + "\n");
+        if (box[0] != 0 || box[1] != 0) {
+            out.write("#R " + box[1] + " " + box[0] + "\n");
+        }
+        out.write("x = " + (box[3] - box[1]) + ", y = " + (box[2] - box[0])
+                + (species == Species.MYCOPLASMA ? ", rule = B3/S23" : "") + "\n");
+        RleLine rle = new RleLine(out);
+        int emptyRows = 0; // Rows ended but not yet written.
+        for (int row = box[0]; row < box[2]; row++) {
+            int runLetter = 0, runLength = 0;
+            boolean rowStarted = false;
+            for (int col = box[1]; col < box[3]; col++) {
+                int id = livingAt(simulator, row, col);
+                char letter = id == Species.NONE ? 'b' : letterFor(id, species, 'o');
+                if (letter != runLetter && runLength > 0) {
+                    if (!rowStarted) {
+                        rle.add(emptyRows, '$');
+                        emptyRows = 0;
+                        rowStarted = true;
+                    }
+                    rle.add(runLength, (char) runLetter);
+                    runLength = 0;
+                }
+                runLetter = letter;
+                runLength++;
+            }
+            if (runLetter != 'b' && runLength > 0) { // Dead cells at the end of a row are left out.
+                if (!rowStarted) {
+                    rle.add(emptyRows, '$');
+                    emptyRows = 0;
+                }
+                rle.add(runLength, (char) runLetter);
+            }
+            emptyRows++;
+        }
+        rle.add(1, '!');
+        out.write('\n');
+    }
+
+    /**
+     * Writes RLE runs, breaking lines before they get too long.
+     */
+    private static class RleLine {
+        private final Writer out;
+        private int length; // Characters on the current line.
+
+        RleLine(Writer out) {
+            this.out = out;
+        }
+
+        /**
+         * Write a run of the given length, nothing if it is empty.
+         */
+        void add(int count, char letter) throws IOException {
+            if (count == 0) {
+                return;
+            }
+            String run = count == 1 ? String.valueOf(letter) : count + String.valueOf(letter);
+            if (length + run.length() > RLE_LINE_LENGTH) {
+                out.write('\n');
+                length = 0;
+            }
+            out.write(run);
+            length += run.length();
+        }
+    }
+
+    private static void writePlaintext(Simulator simulator, Writer out, int species, int[] box) throws IOException {
+        out.write("!S " + Species.getName(species) + "\n");
+        if (box[0] != 0 || box[1] != 0) {
+            out.write("!R " + box[1] + " " + box[0] + "\n");
+        }
+        for (int row = box[0]; row < box[2]; row++) {
+            int dead = 0; // Dead cells not yet written, left out at the end of a row.
+            for (int col = box[1]; col < box[3]; col++) {
+                int id = livingAt(simulator, row, col);
+                if (id == Species.NONE) {
+                    dead++;
+                    continue;
+                }
+                for (; dead > 0; dead--) {
+                    out.write('.');
+                }
+                out.write(letterFor(id, species, 'O'));
+            }
+            out.write('\n');
+        }
+    }
+
+    private static void writeLife106(Simulator simulator, Writer out, int species, int[] box) throws IOException {
+        out.write("#Life 1.06\n");
+        out.write("#S " + Species.getName(species) + "\n");
+        for (int row = box[0]; row < box[2]; row++) {
+            for (int col = box[1]; col < box[3]; col++) {
+                int id = livingAt(simulator, row, col);
+                if (id == Species.NONE) {
+                    continue;
+                }
+                out.write(col + " " + row);
+                if (id != species) {
+                    out.write(" " + Species.getName(id));
+                }
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -1,40 +1,154 @@
 import java.util.Random;
 
 /**
- * Provide control over the randomization of the simulation. By using the
- * shared, fixed-seed randomizer, repeated runs will perform exactly the same
- * (which helps with testing). Set 'useShared' to false to get different random
- * behaviour every time.
+ * Provide control over the randomization of the simulation. Set the seed to
+ * make repeated runs perform exactly the same (which helps with testing); by
+ * default a different seed is picked every time the program starts.
+ *
+ * The rules drawn for every cell in every generation use uniform() instead of
+ * a Random object. It hashes the seed together with the generation, the cell's
+ * packed coordinates and the purpose of the draw, so it allocates nothing,
+ * shares no state between threads, and gives every cell the same numbers
+ * whatever order the cells are stepped in. The shared Random is only for
+ * setting up the field and the weather.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
 
 public class Randomizer {
-    private static final int SEED = 1111;
-    private static final Random rand = new Random(SEED);
-    private static final boolean useShared = false;
+    // Purposes of a draw, so that different decisions about one cell in one
+    // generation get independent numbers.
+    public static final int INFECTION = 0; // Disease.infectionMask(), for each row and 64 columns.
+    // Disease.spreadDisease(), plus the neighbour's place in the 3x3 block around
+    // the cell, (row offset + 1) * 3 + (column offset + 1).
+    public static final int SPREAD = 1;
+    public static final int AUTOMATON = 10; // The NonDeterministicCells automaton.
+    // NonDeterministicEngine: cells that might die, or might come back to life,
+    // skipped before the next that does not.
+    public static final int DEATH_GAP = 12;
+    public static final int REVIVAL_GAP = 13;
+
+    private static long seed = new Random().nextLong();
+    private static final SavableRandom rand = new SavableRandom(seed);
+
+    /**
+     * A Random whose state can be read and set, so that a checkpoint can carry
+     * on with the same numbers. It uses the same generator as Random, so a
+     * given seed gives the same numbers as before.
+     */
+    private static class SavableRandom extends Random {
+        private static final long serialVersionUID = 1L;
+        private static final long MULTIPLIER = 0x5DEECE66DL;
+        private static final long MASK = (1L << 48) - 1;
+        private long state; // Set by setSeed(), which the Random constructor calls.
+
+        SavableRandom(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public synchronized void setSeed(long seed) {
+            super.setSeed(seed);
+            state = (seed ^ MULTIPLIER) & MASK;
+        }
+
+        @Override
+        protected synchronized int next(int bits) {
+            state = (state * MULTIPLIER + 0xBL) & MASK;
+            return (int) (state >>> (48 - bits));
+        }
+    }
 
     /**
      * Provide a random generator.
-     * 
+     *
      * @return A random object.
      */
     public static Random getRandom() {
-        if (useShared) {
-            return rand;
-        } else {
-            return new Random();
-        }
+        return rand;
+    }
+
+    /**
+     * Use the given seed from now on, and restart the shared random generator.
+     *
+     * @param newSeed The seed.
+     */
+    public static void setSeed(long newSeed) {
+        seed = newSeed;
+        reset();
+    }
+
+    /**
+     * @return The seed in use.
+     */
+    public static long getSeed() {
+        return seed;
     }
 
     /**
-     * Reset the randomization. This will have no effect if randomization is not
-     * through a shared Random generator.
+     * Reset the randomization, restarting the shared random generator from the
+     * seed.
      */
     public static void reset() {
-        if (useShared) {
-            rand.setSeed(SEED);
+        rand.setSeed(seed);
+    }
+
+    /**
+     * @return The state of the shared random generator, for a checkpoint.
+     */
+    public static long getState() {
+        synchronized (rand) {
+            return rand.state;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Carry on the shared random generator from a state returned by getState().
+     *
+     * @param state The state.
+     */
+    public static void setState(long state) {
+        synchronized (rand) {
+            rand.state = state;
+        }
+    }
+
+    /**
+     * Return a number in [0, 1) for one decision about one cell.
+     *
+     * @param generation The generation being computed.
+     * @param cell       The cell's packed coordinates, see Coordinates.
+     * @param purpose    What the number is for, one of the constants above.
+     * @return The same number every time for the same seed and arguments.
+     */
+    public static double uniform(long generation, long cell, int purpose) {
+        return uniform(generation, cell, purpose, 0);
+    }
+
+    /**
+     * Return a number in [0, 1) for one of several draws made for the same
+     * decision.
+     *
+     * @param generation The generation being computed.
+     * @param cell       The cell's packed coordinates, see Coordinates.
+     * @param purpose    What the number is for, one of the constants above.
+     * @param draw       Which of the draws this is.
+     * @return The same number every time for the same seed and arguments.
+     */
+    public static double uniform(long generation, long cell, int purpose, int draw) {
+        long h = mix(seed + generation * 0x9E3779B97F4A7C15L);
+        h = mix(h ^ cell);
+        h = mix(h + ((long) purpose << 32 | (draw & 0xFFFFFFFFL)));
+        return (h >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The SplitMix64 finaliser, which spreads every input bit over the output.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
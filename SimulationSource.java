@@ -0,0 +1,40 @@
+/**
+ * Something that produces generations for a SimulatorView to show, with the
+ * figures shown beside the grid: a running Simulator, or a GenerationReplay of
+ * a recorded run.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public interface SimulationSource {
+    /**
+     * Move on to the next generation.
+     */
+    void simOneGeneration();
+
+    /**
+     * @return The number of the current generation.
+     */
+    int getGeneration();
+
+    /**
+     * @return The description of the temperature.
+     */
+    String getTemperature();
+
+    /**
+     * @return The description of the time of day.
+     */
+    String getTimeString();
+
+    /**
+     * @return The number of cells that are both alive and diseased.
+     */
+    double getDiseaseAliveCells();
+
+    /**
+     * @param species The species id, see Species.
+     * @return The number of living cells of that species.
+     */
+    int getLivingCount(int species);
+}
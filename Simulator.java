@@ -1,6 +1,7 @@
-import javafx.scene.paint.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -13,7 +14,7 @@ import java.util.Random;
  * @version 2024.02.28
  */
 
-public class Simulator {
+public class Simulator implements SimulationSource {
     private static final double CELL_ALIVE_PROB = 0.25;// For generality
     private static final double MYCOPLASMA_ALIVE_PROB = 0.03; // The alive probability of Mycoplasma.
     private static final double MYEVOLVING_ALIVE_PROB = 0.019; // The alive probability of MyEvolvingCellChangeBehaviors.
@@ -21,8 +22,12 @@ public class Simulator {
     private static final double NFACELL_ALIVE_PROB = 0.25; // The alive probability of NonDeterministicCells.
     private List<Cell> cells;
     private Field field;
+    private LifeEngine engine; // Steps the grid instead of the cells, if set.
+    private int threads = 1; // Number of threads a CompactField engine steps with.
     private int generation;
     private String cellType;
+    private GenerationRecorder recorder; // Logs each generation, while recording.
+    private CellAutomata automata; // Automata fed each cell's history, if attached.
 
     /**
      * Construct a simulation field with default size.
@@ -44,36 +49,151 @@ public class Simulator {
     }
 
     /**
-     * Run the simulation from its current state for a single generation. Iterate
-     * over the whole field updating the state of each life form.
+     * Run the simulation from its current state for a single generation. Every
+     * life form decides its next state from the current generation, then the
+     * field swaps to the next generation in one go. A cell that dies leaves the
+     * simulation, as does any disease it had, unless a birth rule such as
+     * Mycoplasma's can bring it alive again; until then it only looks at its
+     * neighbours. A cell that setDead() killed stays dead, whatever else its
+     * act() decided.
      */
     public void simOneGeneration() {
         field.increaseGen(); // Increment the generation count in the field.
-        List<Cell> newCell = new ArrayList<>();
-
-        for (Iterator<Cell> it = cells.iterator(); it.hasNext();) {
-            Cell cell = it.next();
-            cell.act(newCell);
-            if (!cell.isAlive()) {
-                it.remove();
-            }
+        if (engine != null) {
+            engine.step(field);
+            generation++;
+            advanceAutomata();
+            record();
+            return;
         }
+        List<Cell> newCell = new ArrayList<>();
 
         for (Cell cell : cells) {
-            cell.updateState();
+            if (cell.isAlive()) {
+                cell.act(newCell);
+                if (!cell.isAlive()) {
+                    cell.setNextState(false);
+                }
+            } else {
+                cell.actDead();
+            }
+            cell.updateDiseaseCount();
         }
+        field.swapGenerations();
+        cells.removeIf(cell -> {
+            if (cell.isAlive()) {
+                return false;
+            }
+            cell.die();
+            return !cell.canBeBorn();
+        });
 
         cells.addAll(newCell);
         generation++;
+        advanceAutomata();
+        record();
+    }
+
+    /**
+     * Run the simulation for 2^log2 generations. A HashLifeEngine advances the
+     * whole way in a single call, and the temperature and time of day with it
+     * (see Temperature.advance()), unless automata are attached, which must see
+     * every generation; otherwise the generations are run one by one.
+     * 
+     * @param log2 The base 2 logarithm of the number of generations, at most 30.
+     * @throws IllegalStateException if the generation count would overflow.
+     */
+    public void jumpGenerations(int log2) {
+        if (log2 < 0 || log2 > 30) {
+            throw new IllegalArgumentException("Cannot run 2^" + log2 + " generations");
+        }
+        int count = 1 << log2;
+        if (Math.max(generation, field.getGeneration()) > Integer.MAX_VALUE - count) {
+            throw new IllegalStateException("Cannot run 2^" + log2 + " generations after generation " + generation);
+        }
+        if (engine instanceof HashLifeEngine && automata == null) {
+            field.increaseGen(count); // Keep the temperature and time of day in step.
+            ((HashLifeEngine) engine).jump(log2);
+            generation += count;
+            record();
+            return;
+        }
+        for (int gen = 0; gen < count; gen++) {
+            simOneGeneration();
+        }
     }
 
     /**
-     * Reset the simulation to a starting position.
+     * Reset the simulation to a starting position. This ends any recording.
      */
     public void reset() {
+        try {
+            stopRecording();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         generation = 0;
         cells.clear();
         field.reset();
+        if (engine != null) {
+            engine.clear();
+        }
+        if (automata != null) {
+            automata.reset();
+        }
+    }
+
+    /**
+     * Step the grid with the given engine instead of Cell objects. This resets
+     * the simulation, so call populate() or initializeWithSelectedCellType()
+     * afterwards.
+     * 
+     * @param engine The engine to use, or null to go back to Cell objects.
+     */
+    public void setEngine(LifeEngine engine) {
+        if (engine != null && (engine.getDepth() != field.getDepth() || engine.getWidth() != field.getWidth())) {
+            throw new IllegalArgumentException("Engine size does not match the field");
+        }
+        this.engine = engine;
+        applyThreads();
+        reset();
+    }
+
+    /**
+     * Set the number of threads used to step the grid. Only a CompactField
+     * engine steps in parallel.
+     * 
+     * @param threads The number of threads, at least one.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        this.threads = threads;
+        applyThreads();
+    }
+
+    /**
+     * @return The number of threads used to step the grid.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Pass the thread count on to the engine, if it can use it.
+     */
+    private void applyThreads() {
+        if (engine instanceof CompactField) {
+            ((CompactField) engine).setThreads(threads);
+        }
+    }
+
+    /**
+     * @return The engine stepping the grid, or null if Cell objects are used.
+     */
+    public LifeEngine getEngine() {
+        return engine;
     }
 
     /**
@@ -105,7 +225,24 @@ public class Simulator {
         return field.getTimeString();
     }
 
+    /**
+     * Return the number of living cells of one species, from the counts the
+     * engine or field keeps as cells are born and die.
+     * 
+     * @param species The species id, see Species.
+     * @return The number of living cells of that species.
+     */
+    public int getLivingCount(int species) {
+        if (engine != null) {
+            return engine.getLivingCount(species);
+        }
+        return field.getLivingCells(species);
+    }
+
     public double getDiseaseAliveCells() {
+        if (engine != null) {
+            return engine.getDiseasedAliveCount();
+        }
         return field.getDiseasedAliveCells();
     }
 
@@ -116,49 +253,84 @@ public class Simulator {
      * @param String cellType the name of cell
      */
     public void initializeWithSelectedCellType(String cellType) {
+        initializeWithSelectedCellType(cellType, getAliveProbability(cellType));
+    }
+
+    /**
+     * Initializes the simulation with a selected cell type, with the given
+     * probability of each cell starting alive instead of the usual one for the
+     * type.
+     * 
+     * @param cellType         The name of the cell class.
+     * @param aliveProbability The probability of a cell starting alive.
+     */
+    public void initializeWithSelectedCellType(String cellType, double aliveProbability) {
         reset();
         this.cellType = cellType;
         Random rand = Randomizer.getRandom();
         field.clear();
-        double aliveProbability; // Variable to hold the probability for the current cell type
+        int species = Species.fromName(cellType);
+        if (species == Species.NONE) {
+            return; // No cells for an unknown cell type.
+        }
+        int color = getColor(species);
+        // An unbounded field is filled with dead cells of the species, so only
+        // the living ones need placing and patterns can grow past the window.
+        boolean sparse = engine instanceof ChunkedField;
+        if (sparse) {
+            ((ChunkedField) engine).setBackground(species);
+        }
         for (int row = 0; row < field.getDepth(); row++) {
             for (int col = 0; col < field.getWidth(); col++) {
-                Location location = new Location(row, col);
-                Cell cell = null;
-
-                // Determine the type of cell to create based on the specified cellType.
-                switch (cellType) {
-                case "Mycoplasma":
-                    cell = new Mycoplasma(field, location, Color.ORANGE, true);
-                    aliveProbability = MYCOPLASMA_ALIVE_PROB;
-                    break;
-                case "MyFungiChangeColor":
-                    cell = new MyFungiChangeColor(field, location, Color.BLUE, true);
-                    aliveProbability = MYFUNGI_ALIVE_PROB;
-                    break;
-                case "MyEvolvingCellChangeBehaviors":
-                    cell = new MyEvolvingCellChangeBehaviors(field, location, Color.GREEN, false);
-                    aliveProbability = MYEVOLVING_ALIVE_PROB;
-                    break;
-                case "NonDeterministicCells":
-                    cell = new NonDeterministicCells(field, location, Color.YELLOW, false);
-                    aliveProbability = NFACELL_ALIVE_PROB;
-                    break;
-                default:
-                    aliveProbability = CELL_ALIVE_PROB; // Default probability if cell type is unknown
-                    break;
-                }
-
-                if (cell != null && rand.nextDouble() <= aliveProbability) {
-                    cells.add(cell);
-                } else if (cell != null) {
-                    cell.setDead();
-                    cells.add(cell);
+                boolean alive = rand.nextDouble() <= aliveProbability;
+                if (alive || !sparse) {
+                    placeCell(row, col, species, color, alive);
                 }
             }
         }
     }
 
+    /**
+     * Return the colour cells of the given species start with when the field
+     * is set up with that species alone.
+     * 
+     * @param species The species id, see Species.
+     * @return The colour, as ARGB, see Colors.
+     */
+    static int getColor(int species) {
+        switch (species) {
+        case Species.MYCOPLASMA:
+            return Colors.ORANGE;
+        case Species.MYFUNGI:
+            return Colors.BLUE;
+        case Species.MYEVOLVING:
+            return Colors.GREEN;
+        default:
+            return Colors.YELLOW;
+        }
+    }
+
+    /**
+     * Return the usual probability of a cell of the given type starting alive.
+     * 
+     * @param cellType The name of the cell class.
+     * @return The probability, or 0 for an unknown type.
+     */
+    private static double getAliveProbability(String cellType) {
+        switch (cellType) {
+        case "Mycoplasma":
+            return MYCOPLASMA_ALIVE_PROB;
+        case "MyFungiChangeColor":
+            return MYFUNGI_ALIVE_PROB;
+        case "MyEvolvingCellChangeBehaviors":
+            return MYEVOLVING_ALIVE_PROB;
+        case "NonDeterministicCells":
+            return NFACELL_ALIVE_PROB;
+        default:
+            return 0;
+        }
+    }
+
     /**
      * Randomly populate the field live/dead life forms
      */
@@ -170,28 +342,195 @@ public class Simulator {
             for (int col = 0; col < field.getWidth(); col++) {
 
                 if (rand.nextDouble() <= MYCOPLASMA_ALIVE_PROB) {
-                    Location location = new Location(row, col);
-                    Mycoplasma myco = new Mycoplasma(field, location, Color.ORANGE, true);
-                    cells.add(myco);
+                    placeCell(row, col, Species.MYCOPLASMA, Colors.ORANGE, true);
                 } else if (rand.nextDouble() <= MYFUNGI_ALIVE_PROB) {
-                    Location location = new Location(row, col);
-                    MyFungiChangeColor myfu = new MyFungiChangeColor(field, location, Color.PURPLE, true);
-                    cells.add(myfu);
+                    placeCell(row, col, Species.MYFUNGI, Colors.PURPLE, true);
                 } else if (rand.nextDouble() <= MYEVOLVING_ALIVE_PROB) {
-                    Location location = new Location(row, col);
-                    MyEvolvingCellChangeBehaviors myev = new MyEvolvingCellChangeBehaviors(field, location, Color.BLUE,
-                            false);
-                    cells.add(myev);
+                    placeCell(row, col, Species.MYEVOLVING, Colors.BLUE, true);
                 } else if (rand.nextDouble() <= NFACELL_ALIVE_PROB) {
-                    Location location = new Location(row, col);
-                    NonDeterministicCells nond = new NonDeterministicCells(field, location, Color.YELLOW, false);
-                    cells.add(nond);
+                    placeCell(row, col, Species.NONDETERMINISTIC, Colors.YELLOW, true);
                 }
             }
         }
     }
 
+    /**
+     * Place a new life form of the given species, either into the engine or as a
+     * Cell object in the field.
+     * 
+     * @param row     Row coordinate of the location.
+     * @param col     Column coordinate of the location.
+     * @param species The species id, see Species.
+     * @param color   The color of the new cell.
+     * @param alive   Whether the new cell starts alive.
+     * @return The new Cell object, or null if an engine holds the grid.
+     */
+    Cell placeCell(int row, int col, int species, int color, boolean alive) {
+        if (engine != null) {
+            engine.place(row, col, species, alive);
+            return null;
+        }
+        Location location = new Location(row, col);
+        Cell cell;
+        switch (species) {
+        case Species.MYCOPLASMA:
+            cell = new Mycoplasma(field, location, color, true);
+            break;
+        case Species.MYFUNGI:
+            cell = new MyFungiChangeColor(field, location, color, true);
+            break;
+        case Species.MYEVOLVING:
+            cell = new MyEvolvingCellChangeBehaviors(field, location, color, false);
+            break;
+        default:
+            NonDeterministicCells automatonCell = new NonDeterministicCells(field, location, color, false);
+            automatonCell.setAutomatonAlive(alive); // A dead cell's automaton starts DEAD.
+            cell = automatonCell;
+            break;
+        }
+        if (!alive) {
+            cell.setAlive(false);
+        }
+        cells.add(cell);
+        return cell;
+    }
+
     public String getCellType() {
         return cellType;
     }
+
+    /**
+     * Set the generation count and the cell type chosen, once the grid has been
+     * restored from a checkpoint.
+     * 
+     * @param generation The number of generations the simulation had run.
+     * @param cellType   The cell type chosen, or null if the field was mixed.
+     */
+    void restore(int generation, String cellType) {
+        this.generation = generation;
+        this.cellType = cellType;
+    }
+
+    /**
+     * Start writing every generation to a log that GenerationReplay can play
+     * back, beginning with the current one. Set up the field first, as
+     * resetting the simulation ends the recording.
+     * 
+     * @param path             The file to write, replaced if it exists.
+     * @param keyframeInterval The number of generations between keyframes, the
+     *                         most a replay has to read to seek.
+     * @throws IOException if the file cannot be written.
+     */
+    public void startRecording(Path path, int keyframeInterval) throws IOException {
+        stopRecording();
+        recorder = new GenerationRecorder(path, field.getDepth(), field.getWidth(), keyframeInterval);
+        recorder.record(this);
+    }
+
+    /**
+     * Finish the log being recorded, if any, writing its index.
+     * 
+     * @throws IOException if the file cannot be written.
+     */
+    public void stopRecording() throws IOException {
+        if (recorder != null) {
+            GenerationRecorder finished = recorder;
+            recorder = null;
+            finished.close();
+        }
+    }
+
+    /**
+     * Write the generation just run to the log, while recording.
+     */
+    private void record() {
+        if (recorder != null) {
+            try {
+                recorder.record(this);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Run an automaton at every location, fed one symbol about the cell there
+     * after each generation, replacing any attached before. The automata start
+     * from the current generation.
+     * 
+     * @param nfa   The automaton, with all its transitions added.
+     * @param input What each automaton reads about its cell.
+     * @return The automata, to query which locations accept.
+     */
+    public CellAutomata attachAutomata(NFA nfa, CellAutomata.Input input) {
+        automata = new CellAutomata(nfa, input, field.getDepth(), field.getWidth());
+        return automata;
+    }
+
+    /**
+     * Stop running the attached automata, if any.
+     */
+    public void detachAutomata() {
+        automata = null;
+    }
+
+    /**
+     * @return The attached automata, or null if none are attached.
+     */
+    public CellAutomata getAutomata() {
+        return automata;
+    }
+
+    /**
+     * Feed the attached automata the generation just run.
+     */
+    private void advanceAutomata() {
+        if (automata != null) {
+            automata.advance(this);
+        }
+    }
+
+    /**
+     * Reset the simulation and load a pattern file into it, see PatternIO for
+     * the formats.
+     * 
+     * @param path The pattern file.
+     * @return The number of living cells placed.
+     * @throws IOException if the file cannot be read or is not a valid pattern.
+     */
+    public int loadPattern(Path path) throws IOException {
+        return PatternIO.load(this, path, 0, 0);
+    }
+
+    /**
+     * Save the living cells of the field to a pattern file, in the format its
+     * extension gives, see PatternIO.
+     * 
+     * @param path The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void savePattern(Path path) throws IOException {
+        PatternIO.save(this, path);
+    }
+
+    /**
+     * Save the simulation so that it can be carried on later, see Checkpoint.
+     * 
+     * @param path The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void saveCheckpoint(Path path) throws IOException {
+        Checkpoint.save(this, path);
+    }
+
+    /**
+     * Load a simulation saved with saveCheckpoint().
+     * 
+     * @param path The file to read.
+     * @return The simulation, ready to run its next generation.
+     * @throws IOException if the file cannot be read or is not a checkpoint.
+     */
+    public static Simulator loadCheckpoint(Path path) throws IOException {
+        return Checkpoint.load(path);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import javafx.stage.Stage;
+
+/**
+ * A simulation view that plays back a run recorded with
+ * Simulator.startRecording() instead of running the simulation. The buttons
+ * step through the recorded generations at the chosen rate, and Reset goes
+ * back to the generation the replay started at.
+ *
+ * Usage: java SimulatorReplayView log [generation]
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class SimulatorReplayView extends SimulatorView {
+    private Path path; // The log to play back.
+    private int startGeneration; // The generation to start from and reset to.
+    private GenerationReplay replay;
+
+    /**
+     * Constructor for a replay of the log given on the command line, for
+     * launch().
+     */
+    public SimulatorReplayView() {
+    }
+
+    /**
+     * Constructor for a replay of the given log.
+     *
+     * @param path            The log written while recording.
+     * @param startGeneration The generation to start from.
+     */
+    public SimulatorReplayView(Path path, int startGeneration) {
+        this.path = path;
+        this.startGeneration = startGeneration;
+    }
+
+    /**
+     * Open the log and show the generation to start from.
+     *
+     * @param stage The primary stage for this application, onto which the
+     *              application scene can be set.
+     */
+    @Override
+    public void start(Stage stage) {
+        if (path == null) {
+            List<String> args = getParameters().getRaw();
+            if (args.isEmpty()) {
+                throw new IllegalArgumentException("Usage: java SimulatorReplayView log [generation]");
+            }
+            path = Paths.get(args.get(0));
+            startGeneration = args.size() > 1 ? Integer.parseInt(args.get(1)) : 0;
+        }
+        try {
+            replay = new GenerationReplay(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        super.start(stage);
+        setInfoText("Replay of " + path.getFileName() + ", generations " + replay.getFirstGeneration() + " to "
+                + replay.getLastGeneration());
+    }
+
+    /**
+     * Go to the generation the replay starts from.
+     */
+    @Override
+    protected void initializeSimulation() {
+        try {
+            replay.seek(startGeneration);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Fit the grid recorded to the canvas, as it may not be the default size.
+     */
+    @Override
+    protected void setCanvasScale() {
+        fieldCanvas.setScale(replay.getDepth(), replay.getWidth());
+    }
+
+    @Override
+    protected SimulationSource getSource() {
+        return replay;
+    }
+
+    /**
+     * Colour the cells as they were recorded.
+     */
+    @Override
+    protected void fillCanvas() {
+        fieldCanvas.fill((row, col) -> replay.isAlive(row, col) ? replay.getColor(row, col) : EMPTY_ARGB);
+    }
+
+    /**
+     * Close the log when the application ends.
+     */
+    @Override
+    public void stop() throws IOException {
+        stopSimulation();
+        replay.close();
+    }
+
+    /**
+     * The main method to launch the replay.
+     *
+     * @param args The log to play back, optionally followed by the generation
+     *             to start from.
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -1,6 +1,9 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.application.Platform;
 import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.Group;
 import javafx.scene.layout.BorderPane;
@@ -15,6 +18,12 @@ import javafx.stage.Stage;
  * each location. Colors for each type of life form can be defined using the
  * setColor method.
  *
+ * The simulation runs on its own thread, at a chosen number of generations per
+ * second or as fast as it can. An AnimationTimer shows the newest generation
+ * the simulation thread has drawn once per screen frame. While a frame is
+ * waiting to be shown the simulation thread does not draw, so generations in
+ * between are skipped rather than queued up.
+ *
  * @author David J. Barnes, Michael Kölling & Jeffery Raphael & Jiangjing, Xu &
  *         Hongyuan, Zhao
  * @version 2024.02.28
@@ -26,6 +35,7 @@ public abstract class SimulatorView extends Application {
 	protected static final int WIN_WIDTH = 700;
 	protected static final int WIN_HEIGHT = 600;
 	protected static final Color EMPTY_COLOR = Color.WHITE;
+	protected static final int EMPTY_ARGB = FieldCanvas.argb(EMPTY_COLOR);
 
 	protected final String GENERATION_PREFIX = "Generation: ";
 	protected final String POPULATION_PREFIX = "Population: ";
@@ -35,23 +45,60 @@ public abstract class SimulatorView extends Application {
     protected FieldStats stats;
     protected Simulator simulator;
     protected Stage stage;
-    protected boolean isSimulationRunning;
+    protected volatile boolean isSimulationRunning;
 
 	// Components used for the side part
 	private final String TEMPERATURE_PREFIX = "Temperature: ";
 	private final String TIME_PREFIX = "Time: ";
 	private final String DISEASENUM_PREFIX = "Number of Disease Alive Cells: ";
-	private Label temperatureLabel, timeLabel, diseaseNumLabel;
+	private final String SPEED_PREFIX = "Speed: ";
+	private Label temperatureLabel, timeLabel, diseaseNumLabel, speedLabel;
 	private Button simulateOneGenBtn, resetBtn, simulateLongRun;
+	private ChoiceBox<String> rateChoice;
+
+	// Generations per second that can be chosen, with 0 for as fast as possible.
+	private static final int[] RATES = { 1, 2, 5, 10, 30, 60, 0 };
+	private static final int DEFAULT_RATE = 2;
+	private volatile int targetRate = DEFAULT_RATE; // Generations per second, or 0 for full speed.
+	private Thread simulationThread; // Runs the generations, if a run has been started.
+	private volatile Frame pendingFrame; // Drawn by the simulation thread and not shown yet.
+	private final AtomicLong generationsRun = new AtomicLong(); // Generations run since the view started.
+	private final AtomicLong tilesRun = new AtomicLong(); // Tiles a CompactField stepped in those generations.
+	private volatile int tileCount; // The tiles of the CompactField being stepped, or 0 for other engines.
+	private AnimationTimer renderLoop;
+	private long sampleStart; // When the current speed sample started, in nanoseconds.
+	private long sampleGenerations; // generationsRun when the sample started.
+	private long sampleTiles; // tilesRun when the sample started.
+	private int sampleFrames; // Frames shown since the sample started.
+
+	/**
+	 * The labels of a generation that has been drawn into the canvas, taken
+	 * on the simulation thread at the same time.
+	 */
+	private static class Frame {
+		final int generation;
+		final String temperature;
+		final String time;
+		final double diseaseAliveCells;
+		final int[] livingCounts; // Living cells of each species, see FieldStats.takeCounts().
+
+		Frame(SimulationSource source) {
+			generation = source.getGeneration();
+			temperature = source.getTemperature();
+			time = source.getTimeString();
+			diseaseAliveCells = source.getDiseaseAliveCells();
+			livingCounts = FieldStats.takeCounts(source);
+		}
+	}
 
 	@Override
 	public void start(Stage stage) {
 		// Common initialization logic here
 		stats = new FieldStats();
 		fieldCanvas = new FieldCanvas(WIN_WIDTH - 200, WIN_HEIGHT - 100);
-		fieldCanvas.setScale(GRID_HEIGHT, GRID_WIDTH);
 		simulator = new Simulator();
 		initializeSimulation();
+		setCanvasScale();
 		// Initialize labels and buttons
 		Group root = new Group();
 
@@ -61,6 +108,14 @@ public abstract class SimulatorView extends Application {
 		temperatureLabel = new Label(TEMPERATURE_PREFIX);
 		timeLabel = new Label(TIME_PREFIX);
 		diseaseNumLabel = new Label(DISEASENUM_PREFIX);
+		speedLabel = new Label(SPEED_PREFIX);
+
+		rateChoice = new ChoiceBox<>();
+		for (int rate : RATES) {
+			rateChoice.getItems().add(rate == 0 ? "Full speed" : rate + " gen/s");
+		}
+		rateChoice.setValue(DEFAULT_RATE + " gen/s");
+		rateChoice.setOnAction(event -> targetRate = RATES[rateChoice.getSelectionModel().getSelectedIndex()]);
 
 		simulateOneGenBtn = new Button("Simulate One Generation");
 		resetBtn = new Button("Reset");
@@ -88,13 +143,13 @@ public abstract class SimulatorView extends Application {
 
 		// Create VBox for side part
 		VBox sideBar = new VBox(10); // 10 is the spacing between elements
-		sideBar.getChildren().addAll(temperatureLabel, timeLabel);
+		sideBar.getChildren().addAll(temperatureLabel, timeLabel, speedLabel);
 
 		VBox bottomBar = new VBox(10);
 		bottomBar.getChildren().addAll(population, diseaseNumLabel);
 
 		VBox leftBar = new VBox(10);
-		leftBar.getChildren().addAll(simulateOneGenBtn, resetBtn, simulateLongRun);
+		leftBar.getChildren().addAll(simulateOneGenBtn, resetBtn, simulateLongRun, rateChoice);
 
 		bPane.setTop(infoPane);
 		bPane.setCenter(fieldCanvas);
@@ -111,9 +166,51 @@ public abstract class SimulatorView extends Application {
 
 		stage.setScene(scene);
 		stage.setTitle("Life Simulation");
-		updateCanvas(simulator.getGeneration(), simulator.getField(), simulator.getTemperature(),
-				simulator.getTimeString(), simulator.getDiseaseAliveCells());
+		showCurrent();
 		stage.show();
+
+		renderLoop = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				showFrame(now);
+			}
+		};
+		sampleStart = System.nanoTime();
+		renderLoop.start();
+	}
+
+	/**
+	 * Show the frame the simulation thread drew last, if it has not been shown,
+	 * and once a second update the speed label. Called by the AnimationTimer on
+	 * every screen frame.
+	 * 
+	 * @param now The time of the screen frame, in nanoseconds.
+	 */
+	private void showFrame(long now) {
+		Frame frame = pendingFrame;
+		if (frame != null) {
+			updateCanvas(frame.generation, simulator.getField(), frame.temperature, frame.time,
+					frame.diseaseAliveCells, frame.livingCounts);
+			pendingFrame = null; // The simulation thread may draw the next frame.
+			sampleFrames++;
+		}
+		long elapsed = now - sampleStart;
+		if (elapsed >= 1_000_000_000L) {
+			long generations = generationsRun.get();
+			long tiles = tilesRun.get();
+			String speed = String.format("%s%.1f gen/s, %.1f fps", SPEED_PREFIX,
+					(generations - sampleGenerations) * 1e9 / elapsed, sampleFrames * 1e9 / elapsed);
+			if (tileCount > 0 && generations > sampleGenerations) {
+				// The tiles stepped per generation, out of all of them.
+				speed += String.format(",\n%.0f / %d tiles", (double) (tiles - sampleTiles)
+						/ (generations - sampleGenerations), tileCount);
+			}
+			speedLabel.setText(speed);
+			sampleStart = now;
+			sampleGenerations = generations;
+			sampleTiles = tiles;
+			sampleFrames = 0;
+		}
 	}
 
 	/**
@@ -124,34 +221,72 @@ public abstract class SimulatorView extends Application {
 	}
 
 	/**
-	 * Show the current status of the field.
+	 * Fit the grid shown to the canvas.
+	 */
+	protected void setCanvasScale() {
+		fieldCanvas.setScale(GRID_HEIGHT, GRID_WIDTH);
+	}
+
+	/**
+	 * @return Where the generations shown come from: the simulator, unless a
+	 *         subclass replays a recorded run instead.
+	 */
+	protected SimulationSource getSource() {
+		return simulator;
+	}
+
+	/**
+	 * Work out the colour of every cell for the next frame, from the source of
+	 * the generations. Called on the simulation thread, see fillCanvas(Field).
+	 */
+	protected void fillCanvas() {
+		fillCanvas(simulator.getField());
+	}
+
+	/**
+	 * Fill in and show the current generation straight away. Must be called on
+	 * the JavaFX thread while no simulation thread is running.
+	 */
+	protected void showCurrent() {
+		SimulationSource source = getSource();
+		fillCanvas();
+		updateCanvas(source.getGeneration(), simulator.getField(), source.getTemperature(), source.getTimeString(),
+				source.getDiseaseAliveCells(), FieldStats.takeCounts(source));
+	}
+
+	/**
+	 * Work out the colour of every cell of the field for the next frame. This
+	 * does not touch the scene, so the simulation thread can call it after each
+	 * generation, leaving only the copy to the screen for updateCanvas().
 	 * 
-	 * @param generation The current generation.
-	 * @param field      The field whose status is to be displayed.
+	 * @param field The field whose status is to be displayed.
+	 */
+	protected void fillCanvas(Field field) {
+		fieldCanvas.fill((row, col) -> {
+			Cell cell = field.getObjectAt(row, col);
+			return cell != null && cell.isAlive() ? cell.getColor() : EMPTY_ARGB;
+		});
+	}
+
+	/**
+	 * Show the current status of the field, as last filled in by fillCanvas().
+	 * Only formats what it is given, so every label shows the same generation
+	 * as the canvas.
+	 * 
+	 * @param generation   The current generation.
+	 * @param field        The field whose status is to be displayed.
+	 * @param livingCounts The living cells of each species in that generation.
 	 */
 	protected void updateCanvas(int generation, Field field, String temperature, String time,
-			double diseaseAliveCells) {
+			double diseaseAliveCells, int[] livingCounts) {
 		genLabel.setText(GENERATION_PREFIX + generation);
 		temperatureLabel.setText(TEMPERATURE_PREFIX + temperature);
 		timeLabel.setText(TIME_PREFIX + time);
 		diseaseNumLabel.setText(DISEASENUM_PREFIX + diseaseAliveCells);
-		stats.reset();
-
-		for (int row = 0; row < field.getDepth(); row++) {
-			for (int col = 0; col < field.getWidth(); col++) {
-				Cell cell = field.getObjectAt(row, col);
-
-				if (cell != null && cell.isAlive()) {
-					stats.incrementCount(cell.getClass());
-					fieldCanvas.drawMark(col, row, cell.getColor());
-				} else {
-					fieldCanvas.drawMark(col, row, EMPTY_COLOR);
-				}
-			}
-		}
+		fieldCanvas.paint();
 
-		stats.countFinished();
-		population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
+		stats.update(livingCounts);
+		population.setText(POPULATION_PREFIX + stats.getPopulationDetails());
 	}
 
 	/**
@@ -159,42 +294,97 @@ public abstract class SimulatorView extends Application {
 	 * 
 	 * @return true If there is more than one species alive.
 	 */
-	protected boolean isViable(Field field) {
-		return stats.isViable(field);
+	protected boolean isViable() {
+		return stats.isViable();
 	}
 
 	/**
 	 * Run the simulation from its current state for the given number of
-	 * generations. Stop before the given number of generations if the simulation
-	 * ceases to be viable.
+	 * generations, on a thread of its own, at the chosen rate. Stop before the
+	 * given number of generations if the simulation is stopped. A run already
+	 * going is stopped first.
 	 * 
 	 * @param numGenerations The number of generations to run for.
 	 */
 	protected void simulate(int numGenerations) {
-		new Thread(() -> {
-
+		stopSimulation();
+		isSimulationRunning = true;
+		LifeEngine engine = simulator.getEngine();
+		CompactField tiled = getSource() == simulator && engine instanceof CompactField ? (CompactField) engine
+				: null; // Only a CompactField skips tiles.
+		tileCount = tiled == null ? 0 : tiled.getTileCount();
+		simulationThread = new Thread(() -> {
+			long due = System.nanoTime(); // When the next generation is due, at a target rate.
 			for (int gen = 1; gen <= numGenerations && isSimulationRunning; gen++) {
-				simulator.simOneGeneration();
-				simulator.delay(500);
-				Platform.runLater(() -> {
-					updateCanvas(simulator.getGeneration(), simulator.getField(), simulator.getTemperature(),
-							simulator.getTimeString(), simulator.getDiseaseAliveCells());
-				});
+				getSource().simOneGeneration();
+				if (tiled != null) {
+					tilesRun.addAndGet(tiled.getTilesStepped());
+				}
+				generationsRun.incrementAndGet();
+				if (pendingFrame == null) {
+					drawFrame();
+				}
+				int rate = targetRate;
+				if (rate > 0) {
+					due += 1_000_000_000L / rate;
+					long wait = due - System.nanoTime();
+					if (wait > 0) {
+						simulator.delay((int) (wait / 1_000_000));
+					} else {
+						due = System.nanoTime(); // Fallen behind, so do not try to catch up.
+					}
+				} else {
+					due = System.nanoTime();
+				}
 			}
+			// Make sure the last generation run is shown, once the frame before it has been.
+			while (isSimulationRunning && pendingFrame != null) {
+				simulator.delay(1);
+			}
+			if (isSimulationRunning) {
+				drawFrame();
+			}
+		});
+		simulationThread.setDaemon(true);
+		simulationThread.start();
+	}
 
-		}).start();
+	/**
+	 * Draw the current generation into the canvas and hand it to the render
+	 * loop. Called on the simulation thread when no frame is waiting.
+	 */
+	private void drawFrame() {
+		fillCanvas();
+		pendingFrame = new Frame(getSource());
+	}
+
+	/**
+	 * Stop the simulation thread, if it is running, and wait for it to finish
+	 * the generation it is on.
+	 */
+	protected void stopSimulation() {
+		isSimulationRunning = false;
+		if (simulationThread != null) {
+			simulationThread.interrupt(); // Cut short any wait for the next generation.
+			try {
+				simulationThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			simulationThread = null;
+		}
+		pendingFrame = null;
 	}
 
 	/**
 	 * Reset the simulation to a starting position.
 	 */
 	protected void reset() {
-		isSimulationRunning = false; // Ensure the simulation is stopped
+		stopSimulation(); // Ensure the simulation is stopped
 		this.simulator = new Simulator();
 		stats = new FieldStats();
 		initializeSimulation();
-		updateCanvas(simulator.getGeneration(), simulator.getField(), simulator.getTemperature(),
-				simulator.getTimeString(), simulator.getDiseaseAliveCells());
+		showCurrent();
 	}
 
 	// Abstract method to be implemented by derived classes
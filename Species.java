@@ -0,0 +1,139 @@
+/**
+ * Small integer identifiers for each form of life, together with the fixed
+ * characteristics that the Cell subclasses set up in their constructors. The
+ * engines that do not keep Cell objects store these ids instead.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class Species {
+    public static final int NONE = 0; // An empty location.
+    public static final int MYCOPLASMA = 1;
+    public static final int MYFUNGI = 2;
+    public static final int MYEVOLVING = 3;
+    public static final int NONDETERMINISTIC = 4;
+    public static final int COUNT = 5; // Number of ids, including NONE.
+
+    private static final String[] NAMES = { "", "Mycoplasma", "MyFungiChangeColor", "MyEvolvingCellChangeBehaviors",
+            "NonDeterministicCells" };
+    private static final int[] MAX_AGES = { 0, Mycoplasma.MAX_AGE, MyFungiChangeColor.MAX_AGE,
+            MyEvolvingCellChangeBehaviors.MAX_AGE, NonDeterministicCells.MAX_AGE };
+    private static final boolean[] DISEASABLE = { false, true, true, false, false };
+    private static final boolean[] MUTUALISTIC = { false, true, false, false, true };
+    // Ages at which the rules in the Cell subclasses start to give a different answer.
+    private static final int[][] RULE_AGES = { {}, {}, { 20, 100 }, { 11, 50 }, {} };
+
+    /**
+     * Return the id for the given cell type name, as used by
+     * Simulator.initializeWithSelectedCellType.
+     *
+     * @param name The name of the cell class.
+     * @return The species id, or NONE if the name is unknown.
+     */
+    public static int fromName(String name) {
+        for (int id = 1; id < COUNT; id++) {
+            if (NAMES[id].equals(name)) {
+                return id;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Return the id of the species the given cell belongs to.
+     *
+     * @param cell The cell, may be null.
+     * @return The species id, or NONE for null.
+     */
+    public static int of(Cell cell) {
+        if (cell instanceof Mycoplasma) {
+            return MYCOPLASMA;
+        } else if (cell instanceof MyFungiChangeColor) {
+            return MYFUNGI;
+        } else if (cell instanceof MyEvolvingCellChangeBehaviors) {
+            return MYEVOLVING;
+        } else if (cell instanceof NonDeterministicCells) {
+            return NONDETERMINISTIC;
+        }
+        return NONE;
+    }
+
+    /**
+     * @param id The species id.
+     * @return The name of the cell class.
+     */
+    public static String getName(int id) {
+        return NAMES[id];
+    }
+
+    /**
+     * @param id The species id.
+     * @return The age at which cells of this species die.
+     */
+    public static int getMaxAge(int id) {
+        return MAX_AGES[id];
+    }
+
+    /**
+     * Return the next age at which a cell of this species may behave
+     * differently with the same neighbours, either because its rule changes or
+     * because it reaches its maximum age. A cell already past its maximum age
+     * dies again at every age.
+     *
+     * @param id  The species id.
+     * @param age The current age.
+     * @return The next such age, greater than the current age.
+     */
+    public static int nextRuleAge(int id, int age) {
+        for (int ruleAge : RULE_AGES[id]) {
+            if (ruleAge > age) {
+                return ruleAge;
+            }
+        }
+        return Math.max(age, MAX_AGES[id]) + 1;
+    }
+
+    /**
+     * @param id The species id.
+     * @return true if cells of this species can catch a disease by themselves.
+     */
+    public static boolean isDiseasable(int id) {
+        return DISEASABLE[id];
+    }
+
+    /**
+     * @param id The species id.
+     * @return true if cells of this species engage in mutualism.
+     */
+    public static boolean isMutualistic(int id) {
+        return MUTUALISTIC[id];
+    }
+
+    /**
+     * Apply the act() rule of a species to a cell that is not diseased. For
+     * NonDeterministicCells the result is also the automaton's next state.
+     *
+     * @param id             The species id.
+     * @param alive          Whether the cell is alive after checkAge(). Only
+     *                       Mycoplasma has a rule for dead cells.
+     * @param neighbours     The number of live neighbours.
+     * @param age            The age of the cell.
+     * @param automatonAlive Whether a NonDeterministicCells automaton is in the
+     *                       ALIVE state.
+     * @param chance         A random number in [0, 1), only used by
+     *                       NonDeterministicCells.
+     * @return true if the cell will be alive in the next generation.
+     */
+    static boolean nextState(int id, boolean alive, int neighbours, int age, boolean automatonAlive, double chance) {
+        switch (id) {
+        case MYCOPLASMA:
+            return Mycoplasma.nextState(alive, neighbours);
+        case MYFUNGI:
+            return MyFungiChangeColor.nextState(neighbours, age);
+        case MYEVOLVING:
+            return MyEvolvingCellChangeBehaviors.nextState(neighbours, age);
+        default:
+            return NonDeterministicCells.nextAutomatonState(automatonAlive, alive, neighbours, chance);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.util.Random;
 public class Temperature {
     private static final Random rand = Randomizer.getRandom(); // Random number generator.
     private static final int MAX_TEMPERATURE_LENGTH = 3; // Maximum duration for a temperature condition.
+    private static final int EXACT_STEPS = 64; // Steps after a change that advance() still takes one by one.
 
     private int currentTemperatureStep; // Tracks the remaining steps for the current temperature condition.
     private boolean isCold; // Flag indicating whether the current condition is cold.
@@ -25,6 +26,20 @@ public class Temperature {
         randomiseTemperature(); // Set an initial random temperature.
     }
 
+    /**
+     * Constructor for Temperature in a given condition, as saved in a
+     * checkpoint.
+     *
+     * @param description The condition, as returned by getDescription().
+     * @param stepsLeft   The number of steps before the condition changes.
+     */
+    public Temperature(String description, int stepsLeft) {
+        isCold = description.equals("Cold");
+        isHot = description.equals("Hot");
+        isWarm = !isCold && !isHot;
+        currentTemperatureStep = stepsLeft;
+    }
+
     /**
      * Randomly sets the temperature condition (cold, hot, or warm) and its
      * duration.
@@ -61,6 +76,49 @@ public class Temperature {
         }
     }
 
+    /**
+     * Advance the temperature by a number of steps at once, as update() would
+     * that many times. The condition after a change does not depend on the one
+     * before, so once the current condition has run out only the last few
+     * steps are taken one by one. Further than EXACT_STEPS after a change, the
+     * condition is drawn afresh and its steps left are drawn from their long
+     * run distribution, in which a condition with k steps left is as likely
+     * as one that lasts at least k steps. The chance of each outcome then
+     * differs from that of calling update() by less than 1e-16.
+     *
+     * @param steps The number of steps, not negative.
+     */
+    public void advance(int steps) {
+        if (steps < currentTemperatureStep) {
+            currentTemperatureStep -= steps;
+            return;
+        }
+        steps -= currentTemperatureStep;
+        if (steps > EXACT_STEPS) {
+            randomiseTemperature();
+            // Steps left k, for k = 1..MAX, with weight MAX - k + 1.
+            int weight = rand.nextInt(MAX_TEMPERATURE_LENGTH * (MAX_TEMPERATURE_LENGTH + 1) / 2);
+            int stepsLeft = 1;
+            for (int k = MAX_TEMPERATURE_LENGTH; weight >= k; k--) {
+                weight -= k;
+                stepsLeft++;
+            }
+            currentTemperatureStep = stepsLeft;
+            return;
+        }
+        randomiseTemperature();
+        for (; steps > 0; steps--) {
+            update();
+        }
+    }
+
+    /**
+     * @return The number of steps before the condition changes.
+     */
+    public int getStepsLeft() {
+        return currentTemperatureStep;
+    }
+
     /**
      * Provides a description of the current temperature condition.
      * 
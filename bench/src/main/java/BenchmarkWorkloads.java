@@ -0,0 +1,253 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * The operations measured by the benchmarks in the bench package. JMH will not
+ * generate code for a benchmark in the default package, and a class in a named
+ * package cannot refer to the simulation's classes, so each operation is set
+ * up here and handed over as an IntSupplier. Every call performs the operation
+ * once and returns something derived from it, for the benchmark to consume.
+ *
+ * Every workload is set up from the same seed, so runs compare like with like.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class BenchmarkWorkloads {
+    private static final long SEED = 42;
+
+    /**
+     * Step a field of one cell type.
+     *
+     * @param type    The name of the cell class.
+     * @param size    The depth and width of the field.
+     * @param density The probability of a cell starting alive.
+     * @return One generation per call.
+     */
+    public static IntSupplier simulation(String type, int size, double density) {
+        Simulator simulator = new Simulator(size, size);
+        Randomizer.setSeed(SEED);
+        simulator.initializeWithSelectedCellType(type, density);
+        return () -> {
+            simulator.simOneGeneration();
+            return simulator.getGeneration();
+        };
+    }
+
+    /**
+     * Step a field filled by populate(), with every species at its usual
+     * density.
+     *
+     * @param size The depth and width of the field.
+     * @return One generation per call.
+     */
+    public static IntSupplier mixedSimulation(int size) {
+        Simulator simulator = new Simulator(size, size);
+        Randomizer.setSeed(SEED);
+        simulator.populate();
+        return () -> {
+            simulator.simOneGeneration();
+            return simulator.getGeneration();
+        };
+    }
+
+    /**
+     * Call Field.adjacentLocations() for each location in turn.
+     *
+     * @param size    The depth and width of the field.
+     * @param density The probability of a cell starting alive.
+     * @return The number of adjacent locations of the next location per call.
+     */
+    public static IntSupplier adjacentLocations(int size, double density) {
+        Field field = mycoplasmaField(size, density);
+        Location[] locations = locations(size);
+        return new IntSupplier() {
+            private int next;
+
+            public int getAsInt() {
+                Location location = locations[next];
+                next = next + 1 == locations.length ? 0 : next + 1;
+                return field.adjacentLocations(location).size();
+            }
+        };
+    }
+
+    /**
+     * Call Field.getLivingNeighbours() for each location in turn.
+     *
+     * @param size    The depth and width of the field.
+     * @param density The probability of a cell starting alive.
+     * @return The number of living neighbours of the next location per call.
+     */
+    public static IntSupplier livingNeighbours(int size, double density) {
+        Field field = mycoplasmaField(size, density);
+        Location[] locations = locations(size);
+        return new IntSupplier() {
+            private int next;
+
+            public int getAsInt() {
+                Location location = locations[next];
+                next = next + 1 == locations.length ? 0 : next + 1;
+                return field.getLivingNeighbours(location).size();
+            }
+        };
+    }
+
+    /**
+     * Call Disease.spreadDisease() from each location in turn.
+     *
+     * @param size    The depth and width of the field.
+     * @param density The probability of a cell starting alive.
+     * @return The row of the location the disease spread from per call.
+     */
+    public static IntSupplier spreadDisease(int size, double density) {
+        Field field = mycoplasmaField(size, density);
+        Disease disease = new Disease(field);
+        Location[] locations = locations(size);
+        return new IntSupplier() {
+            private int next;
+
+            public int getAsInt() {
+                Location location = locations[next];
+                next = next + 1 == locations.length ? 0 : next + 1;
+                disease.spreadDisease(field, location);
+                return location.getRow();
+            }
+        };
+    }
+
+    /**
+     * Take the population statistics and describe them, as the view does after
+     * every generation.
+     *
+     * @param size    The depth and width of the field.
+     * @param density The probability of a cell starting alive.
+     * @return The length of the population details per call.
+     */
+    public static IntSupplier populationDetails(int size, double density) {
+        Simulator simulator = new Simulator(size, size);
+        Randomizer.setSeed(SEED);
+        simulator.initializeWithSelectedCellType("Mycoplasma", density);
+        FieldStats stats = new FieldStats();
+        return () -> {
+            stats.update(simulator);
+            return stats.getPopulationDetails().length();
+        };
+    }
+
+    /**
+     * Call NFA.accepts() on random strings of 0s and 1s, with the automaton
+     * from NFARun.
+     *
+     * @param length The length of each string.
+     * @param form   "nfa" to follow sets of NFAState objects, "bits" to compile
+     *               the automaton to bitsets first, or "dfa" to compile it to a
+     *               DFA.
+     * @return 1 if the next string is accepted, otherwise 0, per call.
+     */
+    public static IntSupplier nfaAccepts(int length, String form) {
+        NFA nfa = exampleNFA();
+        if (form.equals("bits")) {
+            nfa.compile();
+        } else if (form.equals("dfa")) {
+            nfa.compile(1024, false);
+        }
+        String[] inputs = randomInputs(length, 256);
+        return new IntSupplier() {
+            private int next;
+
+            public int getAsInt() {
+                String input = inputs[next];
+                next = (next + 1) & (inputs.length - 1);
+                return nfa.accepts(input) ? 1 : 0;
+            }
+        };
+    }
+
+    /**
+     * Check a batch of random strings of 0s and 1s with NFABatch, with the
+     * automaton from NFARun.
+     *
+     * @param length  The length of each string.
+     * @param inputs  The number of strings in the batch.
+     * @param threads The number of threads to check them on.
+     * @return The number accepted, per call.
+     */
+    public static IntSupplier nfaBatch(int length, int inputs, int threads) {
+        NFABatch batch = new NFABatch(exampleNFA(), threads);
+        String[] batchInputs = randomInputs(length, inputs);
+        return () -> batch.evaluate(batchInputs).getAccepted().cardinality();
+    }
+
+    /**
+     * Create random strings of 0s and 1s.
+     */
+    private static String[] randomInputs(int length, int count) {
+        Random rand = new Random(SEED);
+        String[] inputs = new String[count];
+        for (int i = 0; i < inputs.length; i++) {
+            char[] input = new char[length];
+            for (int c = 0; c < length; c++) {
+                input[c] = rand.nextBoolean() ? '1' : '0';
+            }
+            inputs[i] = new String(input);
+        }
+        return inputs;
+    }
+
+    /**
+     * Create a field of Mycoplasma, a given proportion of them alive.
+     */
+    private static Field mycoplasmaField(int size, double density) {
+        Simulator simulator = new Simulator(size, size);
+        Randomizer.setSeed(SEED);
+        simulator.initializeWithSelectedCellType("Mycoplasma", density);
+        return simulator.getField();
+    }
+
+    /**
+     * Return every location of the field in a random order, so that the
+     * benchmarks do not just walk through memory.
+     */
+    private static Location[] locations(int size) {
+        Location[] locations = new Location[size * size];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = new Location(i / size, i % size);
+        }
+        Random rand = new Random(SEED);
+        for (int i = locations.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            Location swap = locations[i];
+            locations[i] = locations[j];
+            locations[j] = swap;
+        }
+        return locations;
+    }
+
+    /**
+     * Build the automaton set up in NFARun.
+     */
+    private static NFA exampleNFA() {
+        NFAState s = new NFAState("S", false);
+        NFAState p = new NFAState("P", false);
+        NFAState t = new NFAState("T", false);
+        NFAState q = new NFAState("Q", false);
+        NFAState r = new NFAState("R", false);
+        NFAState trueState = new NFAState("True", true);
+        s.addTransition("1", Arrays.asList(s, trueState));
+        s.addTransition("ε", Arrays.asList(p));
+        s.addTransition("0", Arrays.asList(t));
+        t.addTransition("0", Arrays.asList(s));
+        p.addTransition("0", Arrays.asList(s));
+        p.addTransition("1", Arrays.asList(q));
+        q.addTransition("0", Arrays.asList(r, trueState));
+        r.addTransition("0", Arrays.asList(r, trueState));
+        r.addTransition("1", Arrays.asList(r, trueState));
+        NFA nfa = new NFA(s);
+        for (NFAState state : Arrays.asList(s, p, t, q, r, trueState)) {
+            nfa.addNFAState(state);
+        }
+        return nfa;
+    }
+}
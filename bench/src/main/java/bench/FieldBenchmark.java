@@ -0,0 +1,70 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The neighbourhood queries of Field, the spread of a disease to the
+ * neighbours and the population statistics, on a field of Mycoplasma. Each
+ * call handles one location, taken from a shuffled list of the whole field.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FieldBenchmark {
+    @Param({ "64", "256" })
+    public int size;
+    @Param({ "0.05", "0.25" })
+    public double density;
+
+    private IntSupplier adjacentLocations;
+    private IntSupplier livingNeighbours;
+    private IntSupplier spreadDisease;
+    private IntSupplier populationDetails;
+
+    @Setup
+    public void setUp() {
+        adjacentLocations = Workloads.create("adjacentLocations", size, density);
+        livingNeighbours = Workloads.create("livingNeighbours", size, density);
+        spreadDisease = Workloads.create("spreadDisease", size, density);
+        populationDetails = Workloads.create("populationDetails", size, density);
+    }
+
+    @Benchmark
+    public int adjacentLocations() {
+        return adjacentLocations.getAsInt();
+    }
+
+    @Benchmark
+    public int getLivingNeighbours() {
+        return livingNeighbours.getAsInt();
+    }
+
+    @Benchmark
+    public int spreadDisease() {
+        return spreadDisease.getAsInt();
+    }
+
+    @Benchmark
+    public int getPopulationDetails() {
+        return populationDetails.getAsInt();
+    }
+}
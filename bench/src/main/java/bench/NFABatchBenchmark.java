@@ -0,0 +1,53 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NFABatch.evaluate() with the automaton from NFARun, on a batch of 65536
+ * random strings of 0s and 1s, checked on one thread and on several. Dividing
+ * the time by the batch size gives the time per input, to set beside
+ * NFABenchmark.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NFABatchBenchmark {
+    private static final int INPUTS = 1 << 16;
+
+    @Param({ "8", "64" })
+    public int length;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private IntSupplier batch;
+
+    @Setup
+    public void setUp() {
+        batch = Workloads.create("nfaBatch", length, INPUTS, threads);
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return batch.getAsInt();
+    }
+}
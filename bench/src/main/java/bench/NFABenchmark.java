@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NFA.accepts() with the automaton from NFARun, on random strings of 0s and
+ * 1s. An NFA has no grid, so the length of the input takes the place of the
+ * grid size and density. Each is measured following sets of NFAState objects,
+ * with the automaton compiled to bitsets, and with it compiled to a DFA.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NFABenchmark {
+    @Param({ "8", "64" })
+    public int length;
+
+    @Param({ "nfa", "bits", "dfa" })
+    public String form;
+
+    private IntSupplier accepts;
+
+    @Setup
+    public void setUp() {
+        accepts = Workloads.create("nfaAccepts", length, form);
+    }
+
+    @Benchmark
+    public int accepts() {
+        return accepts.getAsInt();
+    }
+}
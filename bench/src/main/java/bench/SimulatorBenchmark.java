@@ -0,0 +1,77 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Simulator.simOneGeneration() on fields of Cell objects. Each measurement
+ * iteration starts from a freshly populated field, so that the populations
+ * measured do not drift from one iteration to the next.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatorBenchmark {
+
+    /**
+     * A field of one cell type.
+     */
+    @State(Scope.Thread)
+    public static class SingleType {
+        @Param({ "Mycoplasma", "MyFungiChangeColor", "MyEvolvingCellChangeBehaviors", "NonDeterministicCells" })
+        public String type;
+        @Param({ "64", "256" })
+        public int size;
+        @Param({ "0.05", "0.25" })
+        public double density;
+        IntSupplier generation;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            generation = Workloads.create("simulation", type, size, density);
+        }
+    }
+
+    /**
+     * A field filled by populate(), whose densities are fixed.
+     */
+    @State(Scope.Thread)
+    public static class Mixed {
+        @Param({ "64", "256" })
+        public int size;
+        IntSupplier generation;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            generation = Workloads.create("mixedSimulation", size);
+        }
+    }
+
+    @Benchmark
+    public int singleType(SingleType state) {
+        return state.generation.getAsInt();
+    }
+
+    @Benchmark
+    public int mixed(Mixed state) {
+        return state.generation.getAsInt();
+    }
+}
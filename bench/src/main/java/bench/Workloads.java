@@ -0,0 +1,41 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.IntSupplier;
+
+/**
+ * Look up the workloads set up by BenchmarkWorkloads. That class is in the
+ * default package with the simulation, which code in a named package can only
+ * reach by reflection. The lookup happens once per setup; the benchmarks then
+ * call the returned IntSupplier directly.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+final class Workloads {
+    private Workloads() {
+    }
+
+    /**
+     * Set up a workload.
+     *
+     * @param name The name of the BenchmarkWorkloads method.
+     * @param args The arguments of the method.
+     * @return The workload.
+     */
+    static IntSupplier create(String name, Object... args) {
+        try {
+            for (Method method : Class.forName("BenchmarkWorkloads").getMethods()) {
+                if (method.getName().equals(name)) {
+                    return (IntSupplier) method.invoke(null, args);
+                }
+            }
+        } catch (ClassNotFoundException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot reach BenchmarkWorkloads", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Workload " + name + " could not be set up", e.getCause());
+        }
+        throw new IllegalArgumentException("No workload called " + name);
+    }
+}
@@ -0,0 +1,244 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a NonDeterministicEngine gives the same distribution of outcomes
+ * as NonDeterministicCells.act() and as a CompactField. Each way of stepping
+ * is given the same random grids, a quarter of the cells alive as in the
+ * simulation, placed as Simulator places them, so a dead cell's automaton
+ * starts DEAD. Each grid is stepped one generation.
+ *
+ * A dead cell's automaton never leaves DEAD, so no cell may come back to life,
+ * and a living cell with two or three neighbours must stay alive. Of the
+ * living cells with too few or too many neighbours, the fraction that die
+ * must be close to DEATH_PROB. A CompactField draws the same numbers as
+ * act(), so the two must agree cell for cell. Finally the mean population
+ * after several generations is compared over many seeds. Every statistical
+ * check is a z-test, failing beyond four standard errors.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class NonDeterministicEngineTest {
+    private static final int DEPTH = 100, WIDTH = 150; // The size of the grids.
+    private static final double ALIVE_PROB = 0.25; // As Simulator places NonDeterministicCells.
+    private static final int TRIALS = 40; // Grids stepped once each way.
+    private static final int SEEDS = 60; // Runs whose populations are compared.
+    private static final int GENERATIONS = 30; // Length of each such run.
+    private static final double LIMIT = 4; // The most standard errors a check may be out by.
+
+    // The ways of stepping the cells, see createSimulator().
+    private static final int CELLS = 0, COMPACT = 1, ENGINE = 2;
+    private static final String[] NAMES = { "act()", "CompactField", "NonDeterministicEngine" };
+
+    // Of each trial: whether each cell started alive, and after one step,
+    // whether each cell and its automaton are alive in each way of stepping.
+    private static boolean[][] before;
+    private static boolean[][][] alive, automatonAlive;
+
+    @BeforeAll
+    static void stepTrials() {
+        before = new boolean[TRIALS][];
+        alive = new boolean[NAMES.length][TRIALS][];
+        automatonAlive = new boolean[NAMES.length][TRIALS][];
+        for (int trial = 0; trial < TRIALS; trial++) {
+            for (int way = 0; way < NAMES.length; way++) {
+                Simulator simulator = createSimulator(way);
+                Randomizer.setSeed(trial); // After setEngine(), which resets the weather.
+                before[trial] = fill(simulator, trial);
+                simulator.simOneGeneration();
+                alive[way][trial] = new boolean[DEPTH * WIDTH];
+                automatonAlive[way][trial] = new boolean[DEPTH * WIDTH];
+                for (int i = 0; i < DEPTH * WIDTH; i++) {
+                    alive[way][trial][i] = isAlive(simulator, i / WIDTH, i % WIDTH);
+                    automatonAlive[way][trial][i] = isAutomatonAlive(simulator, i / WIDTH, i % WIDTH);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cellIsAliveExactlyWhenItsAutomatonIs() {
+        for (int way = 0; way < NAMES.length; way++) {
+            for (int trial = 0; trial < TRIALS; trial++) {
+                assertArrayEquals(alive[way][trial], automatonAlive[way][trial], NAMES[way] + ", trial " + trial);
+            }
+        }
+    }
+
+    @Test
+    public void deadCellsStayDead() {
+        for (int way = 0; way < NAMES.length; way++) {
+            int revived = 0;
+            for (int trial = 0; trial < TRIALS; trial++) {
+                for (int i = 0; i < DEPTH * WIDTH; i++) {
+                    if (!before[trial][i] && (alive[way][trial][i] || automatonAlive[way][trial][i])) {
+                        revived++;
+                    }
+                }
+            }
+            assertEquals(0, revived, NAMES[way] + " revived dead cells");
+        }
+    }
+
+    @Test
+    public void cellsWithTwoOrThreeNeighboursSurvive() {
+        for (int way = 0; way < NAMES.length; way++) {
+            int died = 0;
+            for (int trial = 0; trial < TRIALS; trial++) {
+                for (int i = 0; i < DEPTH * WIDTH; i++) {
+                    int neighbours = countNeighbours(before[trial], i / WIDTH, i % WIDTH);
+                    if (before[trial][i] && (neighbours == 2 || neighbours == 3) && !alive[way][trial][i]) {
+                        died++;
+                    }
+                }
+            }
+            assertEquals(0, died, NAMES[way] + " killed cells without a random decision");
+        }
+    }
+
+    @Test
+    public void compactFieldMatchesAct() {
+        for (int trial = 0; trial < TRIALS; trial++) {
+            assertArrayEquals(alive[CELLS][trial], alive[COMPACT][trial], "trial " + trial);
+        }
+    }
+
+    @Test
+    public void lonelyOrCrowdedCellsDieAtDeathProb() {
+        long[] deaths = new long[NAMES.length];
+        long candidates = 0;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            for (int i = 0; i < DEPTH * WIDTH; i++) {
+                int neighbours = countNeighbours(before[trial], i / WIDTH, i % WIDTH);
+                if (before[trial][i] && (neighbours < 2 || neighbours > 3)) {
+                    candidates++;
+                    for (int way = 0; way < NAMES.length; way++) {
+                        deaths[way] += alive[way][trial][i] ? 0 : 1;
+                    }
+                }
+            }
+        }
+        for (int way = 0; way < NAMES.length; way++) {
+            assertProportion(NAMES[way] + " deaths", deaths[way], candidates, NonDeterministicCells.DEATH_PROB);
+        }
+        assertSameProportion("deaths", deaths[CELLS], deaths[ENGINE], candidates);
+    }
+
+    /**
+     * Compare the mean population of each way of stepping after GENERATIONS
+     * generations, over SEEDS runs from the same grids, with that of act().
+     */
+    @Test
+    public void populationsAgree() {
+        double[][] living = new double[NAMES.length][SEEDS];
+        for (int seed = 0; seed < SEEDS; seed++) {
+            for (int way = 0; way < NAMES.length; way++) {
+                Simulator simulator = createSimulator(way);
+                Randomizer.setSeed(1000 + seed * NAMES.length + way); // Independent draws for each way.
+                fill(simulator, seed);
+                for (int generation = 0; generation < GENERATIONS; generation++) {
+                    simulator.simOneGeneration();
+                }
+                living[way][seed] = simulator.getLivingCount(Species.NONDETERMINISTIC);
+            }
+        }
+        double[] mean = new double[NAMES.length], variance = new double[NAMES.length];
+        for (int way = 0; way < NAMES.length; way++) {
+            for (double count : living[way]) {
+                mean[way] += count / SEEDS;
+            }
+            for (double count : living[way]) {
+                variance[way] += (count - mean[way]) * (count - mean[way]) / (SEEDS - 1);
+            }
+        }
+        for (int way = COMPACT; way < NAMES.length; way++) {
+            double error = Math.sqrt((variance[CELLS] + variance[way]) / SEEDS);
+            double z = error == 0 ? 0 : (mean[way] - mean[CELLS]) / error;
+            assertTrue(Math.abs(z) < LIMIT, String.format("%s population after %d generations: %.1f vs %.1f, z = %.2f",
+                    NAMES[way], GENERATIONS, mean[way], mean[CELLS], z));
+        }
+    }
+
+    /**
+     * Create a simulator stepping one of the ways: Cell objects, a CompactField
+     * or a NonDeterministicEngine.
+     */
+    private static Simulator createSimulator(int way) {
+        Simulator simulator = new Simulator(DEPTH, WIDTH);
+        if (way == COMPACT) {
+            simulator.setEngine(new CompactField(DEPTH, WIDTH));
+        } else if (way == ENGINE) {
+            simulator.setEngine(new NonDeterministicEngine(DEPTH, WIDTH));
+        }
+        return simulator;
+    }
+
+    /**
+     * Fill a simulator with NonDeterministicCells, the same for the same seed.
+     *
+     * @return Whether each cell was placed alive, row by row.
+     */
+    private static boolean[] fill(Simulator simulator, long seed) {
+        Random rand = new Random(seed);
+        boolean[] placed = new boolean[DEPTH * WIDTH];
+        for (int i = 0; i < placed.length; i++) {
+            placed[i] = rand.nextDouble() < ALIVE_PROB;
+            simulator.placeCell(i / WIDTH, i % WIDTH, Species.NONDETERMINISTIC,
+                    Simulator.getColor(Species.NONDETERMINISTIC), placed[i]);
+        }
+        return placed;
+    }
+
+    private static boolean isAlive(Simulator simulator, int row, int col) {
+        LifeEngine engine = simulator.getEngine();
+        return engine == null ? simulator.getField().getObjectAt(row, col).isAlive() : engine.isAlive(row, col);
+    }
+
+    private static boolean isAutomatonAlive(Simulator simulator, int row, int col) {
+        LifeEngine engine = simulator.getEngine();
+        return engine == null ? ((NonDeterministicCells) simulator.getField().getObjectAt(row, col)).isAutomatonAlive()
+                : engine.isAutomatonAlive(row, col);
+    }
+
+    /**
+     * Test a fraction against the probability it should be close to.
+     */
+    private static void assertProportion(String name, long hits, long trials, double p) {
+        double z = (hits - trials * p) / Math.sqrt(trials * p * (1 - p));
+        assertTrue(trials > 0 && Math.abs(z) < LIMIT, String.format("%s: %d of %d = %.4f, expected %.4f, z = %.2f",
+                name, hits, trials, (double) hits / trials, p, z));
+    }
+
+    /**
+     * Test that two fractions of the same number of trials are close to each
+     * other.
+     */
+    private static void assertSameProportion(String name, long hits1, long hits2, long trials) {
+        double pooled = (double) (hits1 + hits2) / (2 * trials);
+        double error = Math.sqrt(pooled * (1 - pooled) * 2.0 / trials);
+        double z = (double) (hits1 - hits2) / trials / error;
+        assertTrue(Math.abs(z) < LIMIT, String.format("%s agree: z = %.2f", name, z));
+    }
+
+    /**
+     * Count the living cells adjacent to a location of a grid.
+     */
+    private static int countNeighbours(boolean[] grid, int row, int col) {
+        int count = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(DEPTH - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(WIDTH - 1, col + 1); c++) {
+                if ((r != row || c != col) && grid[r * WIDTH + c]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
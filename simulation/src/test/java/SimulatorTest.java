@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a field set up by Simulator.populate() and stepped with Cell
+ * objects develops as it did before dead cells were kept in the simulation,
+ * when a cell was dropped as soon as it died. The expected numbers of living
+ * and of diseased living cells were measured on that version over 60 runs of
+ * an 80 x 100 field, and are compared with the mean over a fixed set of seeds
+ * here. Each check fails beyond four standard errors.
+ *
+ * @author Jiangjing, Xu & Hongyuan, Zhao
+ * @version 2024.02.28
+ */
+public class SimulatorTest {
+    private static final int DEPTH = 80, WIDTH = 100; // The size of the field.
+    private static final int SEEDS = 10; // Runs averaged over.
+    private static final double LIMIT = 4; // The most standard errors a check may be out by.
+    private static final int BASELINE_RUNS = 60; // Runs the expected numbers were measured over.
+
+    // Generations checked, and at each the mean and standard deviation of the
+    // number of living cells, and the mean number of diseased living cells, as
+    // measured before dead cells were kept.
+    private static final int[] GENERATIONS = { 1, 10, 50, 100, 200 };
+    private static final double[] LIVING = { 1757.2, 1009.9, 278.2, 240.3, 210.7 };
+    private static final double[] LIVING_SD = { 26.2, 35.0, 30.8, 29.8, 28.4 };
+    private static final double[] DISEASED = { 3.7, 0.2, 0.0, 0.0, 0.0 };
+    private static final double MAX_DISEASED = 1; // Above the mean once the first infections are over.
+
+    // The mean over the seeds of the living and diseased living cells at each
+    // generation checked.
+    private static double[] living, diseased;
+
+    @BeforeAll
+    static void run() {
+        living = new double[GENERATIONS.length];
+        diseased = new double[GENERATIONS.length];
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Randomizer.setSeed(seed);
+            Simulator simulator = new Simulator(DEPTH, WIDTH);
+            simulator.populate();
+            for (int generation = 1, check = 0; check < GENERATIONS.length; generation++) {
+                simulator.simOneGeneration();
+                if (generation == GENERATIONS[check]) {
+                    for (int species = 1; species < Species.COUNT; species++) {
+                        living[check] += (double) simulator.getLivingCount(species) / SEEDS;
+                    }
+                    diseased[check] += simulator.getDiseaseAliveCells() / SEEDS;
+                    check++;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void populationMatchesBaseline() {
+        for (int check = 0; check < GENERATIONS.length; check++) {
+            double error = LIVING_SD[check] * Math.sqrt(1.0 / SEEDS + 1.0 / BASELINE_RUNS);
+            double z = (living[check] - LIVING[check]) / error;
+            assertTrue(Math.abs(z) < LIMIT, String.format("living cells at generation %d: %.1f vs %.1f, z = %.2f",
+                    GENERATIONS[check], living[check], LIVING[check], z));
+        }
+    }
+
+    @Test
+    public void deadCellsCarryNoDisease() {
+        for (int check = 1; check < GENERATIONS.length; check++) {
+            assertTrue(diseased[check] <= DISEASED[check] + MAX_DISEASED,
+                    String.format("diseased living cells at generation %d: %.1f vs %.1f", GENERATIONS[check],
+                            diseased[check], DISEASED[check]));
+        }
+    }
+}